@@ -24,6 +24,7 @@ import org.apache.logging.log4j.util.Strings;
 import org.saidone.collectors.NodeCollector;
 import org.saidone.component.BaseComponent;
 import org.saidone.processors.NodeProcessor;
+import org.saidone.service.SizeLaneService;
 import org.saidone.utils.AlfrescoNodeProcessorUtils;
 import org.saidone.utils.AnpCommandLineParser;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -59,6 +60,9 @@ public class AlfrescoNodeProcessorApplicationRunner extends BaseComponent implem
     @Autowired
     private AtomicInteger processedNodesCounter;
 
+    @Autowired
+    private SizeLaneService sizeLaneService;
+
     @Value("${application.consumer-threads}")
     private int consumerThreads;
 
@@ -95,11 +99,15 @@ public class AlfrescoNodeProcessorApplicationRunner extends BaseComponent implem
 
         // producer(s)
         val collector = (NodeCollector) context.getBean(StringUtils.uncapitalize(config.getCollector().getName()));
+        val processor = (NodeProcessor) context.getBean(StringUtils.uncapitalize(config.getProcessor().getName()));
+        config.getCollector().setRequiredFields(processor.getRequiredFields(config.getProcessor()));
         nodeCollectors.add(collector.collect(config.getCollector()));
 
         // consumer(s)
-        val processor = (NodeProcessor) context.getBean(StringUtils.uncapitalize(config.getProcessor().getName()));
         IntStream.range(0, consumerThreads).forEach(i -> nodeProcessors.add(processor.process(config.getProcessor())));
+        if (sizeLaneService.isEnabled()) {
+            IntStream.range(0, sizeLaneService.getLargeFileConsumerThreads()).forEach(i -> nodeProcessors.add(processor.process(config.getProcessor(), true)));
+        }
 
         // wait for all threads to complete
         try {
@@ -0,0 +1,239 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.collectors;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.saidone.model.alfresco.ContentModel;
+import org.saidone.model.config.CollectorConfig;
+import org.saidone.utils.CastUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Base class for collectors reading node identifiers straight from the
+ * Alfresco database.
+ * <p>
+ * Connection settings are taken from the {@code db-url}, {@code db-user} and
+ * {@code db-password} arguments. Types, aspects and properties are given as
+ * {@code prefix:localName} or {@code {uri}localName} and resolved to their
+ * qname ids once, so that the queries compare plain ids; prefixes other than
+ * the Alfresco ones are mapped to their URIs with {@code namespaces}.
+ */
+@Slf4j
+public abstract class AbstractDbNodeCollector extends AbstractNodeCollector {
+
+    private static final String SQL_QNAME = """
+        SELECT q.id
+        FROM alf_qname q
+        JOIN alf_namespace ns ON q.ns_id = ns.id
+        WHERE ns.uri = ? AND q.local_name = ?
+        """;
+
+    private static final String SQL_QNAMES_BY_LOCAL_NAME = """
+        SELECT id
+        FROM alf_qname
+        WHERE local_name = ANY(?)
+        """;
+
+    private static final String SQL_STORE = """
+        SELECT id
+        FROM alf_store
+        WHERE protocol = ? AND identifier = ?
+        """;
+
+    private static final DateTimeFormatter AUDIT_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    /**
+     * Opens a connection to the database configured for the collector.
+     *
+     * @param config collector configuration
+     * @return a new connection
+     * @throws SQLException if the connection cannot be opened
+     */
+    protected static Connection getConnection(CollectorConfig config) throws SQLException {
+        return DriverManager.getConnection(
+                (String) config.getArg("db-url"),
+                (String) config.getArg("db-user"),
+                (String) config.getArg("db-password"));
+    }
+
+    /**
+     * Returns the known namespace prefixes, including those configured with
+     * {@code namespaces}.
+     *
+     * @param config collector configuration
+     * @return prefixes and their URIs
+     */
+    protected static Map<String, String> getNamespaces(CollectorConfig config) {
+        val namespaces = new HashMap<>(ContentModel.NAMESPACES);
+        if (config.getArg("namespaces") != null) {
+            namespaces.putAll(CastUtils.castToMapOfObjectObject(config.getArg("namespaces"), String.class, String.class));
+        }
+        return namespaces;
+    }
+
+    /**
+     * Builds the SQL conditions for the {@code store}, {@code aspects} (all
+     * required), {@code modified-after} and {@code modified-before} arguments.
+     *
+     * @param conn       database connection
+     * @param config     collector configuration
+     * @param namespaces known prefixes and their URIs
+     * @param alias      alias of the {@code alf_node} table in the query
+     * @param store      store to restrict the nodes to when no {@code store}
+     *                   argument is given, {@code null} for none
+     * @param params     receives the values of the parameters of the
+     *                   conditions, in order
+     * @return the conditions, each on its own line starting with {@code AND},
+     * or an empty string
+     * @throws SQLException if a lookup fails
+     */
+    protected static String getNodeFilter(Connection conn, CollectorConfig config, Map<String, String> namespaces, String alias, String store, List<String> params) throws SQLException {
+        val filter = new StringBuilder();
+        val storeRef = config.getArg("store") != null ? (String) config.getArg("store") : store;
+        if (storeRef != null) {
+            filter.append(String.format("\n  AND %s.store_id = %d", alias, getStoreId(conn, storeRef)));
+        }
+        if (config.getArg("aspects") != null) {
+            for (val aspect : CastUtils.castToListOfStrings(config.getArg("aspects"))) {
+                val aspectIds = getQNameIds(conn, List.of(aspect), namespaces);
+                filter.append(aspectIds.isEmpty() ? "\n  AND FALSE" : String.format(
+                        "\n  AND EXISTS (SELECT 1 FROM alf_node_aspects a WHERE a.node_id = %s.id AND a.qname_id = %d)", alias, aspectIds.get(0)));
+            }
+        }
+        if (config.getArg("modified-after") != null) {
+            filter.append(String.format("\n  AND %s.audit_modified > ?", alias));
+            params.add(AUDIT_DATE_FORMAT.format(OffsetDateTime.parse((String) config.getArg("modified-after"))));
+        }
+        if (config.getArg("modified-before") != null) {
+            filter.append(String.format("\n  AND %s.audit_modified < ?", alias));
+            params.add(AUDIT_DATE_FORMAT.format(OffsetDateTime.parse((String) config.getArg("modified-before"))));
+        }
+        return filter.toString();
+    }
+
+    /**
+     * Looks up the ids of the given qualified names. Names never used in the
+     * repository have no id and are left out.
+     *
+     * @param conn       database connection
+     * @param qNames     names in {@code prefix:localName} or
+     *                   {@code {uri}localName} form
+     * @param namespaces known prefixes and their URIs
+     * @return the ids found
+     * @throws SQLException if the query fails
+     */
+    protected static List<Long> getQNameIds(Connection conn, List<String> qNames, Map<String, String> namespaces) throws SQLException {
+        val ids = new ArrayList<Long>();
+        try (val pstmt = conn.prepareStatement(SQL_QNAME)) {
+            for (val qName : qNames) {
+                String uri;
+                String localName;
+                if (qName.startsWith("{")) {
+                    uri = qName.substring(1, qName.indexOf('}'));
+                    localName = qName.substring(qName.indexOf('}') + 1);
+                } else {
+                    val prefix = qName.substring(0, Math.max(0, qName.indexOf(':')));
+                    uri = namespaces.get(prefix);
+                    if (uri == null) {
+                        throw new IllegalArgumentException(String.format("Unknown namespace prefix for %s", qName));
+                    }
+                    localName = qName.substring(qName.indexOf(':') + 1);
+                }
+                pstmt.setString(1, uri);
+                pstmt.setString(2, localName);
+                try (val rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        ids.add(rs.getLong("id"));
+                    } else {
+                        log.warn("No qname found in the database for {}", qName);
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Looks up the ids of the qualified names having the given local names,
+     * whatever their namespace.
+     *
+     * @param conn       database connection
+     * @param localNames local names
+     * @return the ids found
+     * @throws SQLException if the query fails
+     */
+    protected static List<Long> getQNameIdsByLocalName(Connection conn, List<String> localNames) throws SQLException {
+        val ids = new ArrayList<Long>();
+        try (val pstmt = conn.prepareStatement(SQL_QNAMES_BY_LOCAL_NAME)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", localNames.toArray()));
+            try (val rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong("id"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Looks up the id of a store.
+     *
+     * @param conn     database connection
+     * @param storeRef store reference, e.g. {@code workspace://SpacesStore}
+     * @return the store id, or {@code -1} if there is no such store
+     * @throws SQLException if the query fails
+     */
+    protected static long getStoreId(Connection conn, String storeRef) throws SQLException {
+        val separator = storeRef.indexOf("://");
+        if (separator < 0) {
+            throw new IllegalArgumentException(String.format("Invalid store reference %s", storeRef));
+        }
+        try (val pstmt = conn.prepareStatement(SQL_STORE)) {
+            pstmt.setString(1, storeRef.substring(0, separator));
+            pstmt.setString(2, storeRef.substring(separator + 3));
+            try (val rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong("id") : -1L;
+            }
+        }
+    }
+
+    /**
+     * Renders ids as the content of an SQL {@code IN} list.
+     *
+     * @param ids ids
+     * @return comma separated ids, or {@code -1} when there are none so that
+     * nothing matches
+     */
+    protected static String toSqlList(List<Long> ids) {
+        return ids.isEmpty() ? "-1" : ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+}
\ No newline at end of file
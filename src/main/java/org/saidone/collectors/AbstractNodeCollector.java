@@ -18,14 +18,26 @@
 
 package org.saidone.collectors;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import lombok.val;
 import org.saidone.component.BaseComponent;
 import org.saidone.model.config.CollectorConfig;
+import org.saidone.service.NodeHintService;
+import org.saidone.service.SizeLaneService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
+import java.util.ArrayDeque;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
 
 /**
  * Base implementation of {@link NodeCollector} providing queue injection and a
@@ -37,6 +49,54 @@ public abstract class AbstractNodeCollector extends BaseComponent implements Nod
     @Autowired
     LinkedBlockingQueue<String> queue;
 
+    @Autowired
+    NodeHintService nodeHintService;
+
+    @Autowired
+    SizeLaneService sizeLaneService;
+
+    @Value("${application.prefetch-threads:8}")
+    private int prefetchThreads;
+
+    /**
+     * Executor fetching pages ahead of the ones being enqueued, shared by
+     * all the listings of the collector, e.g. the partitions of a query or
+     * the folders listed by the workers of a tree walk.
+     */
+    private ExecutorService prefetchExecutor;
+
+    /**
+     * Handles a page fetched by {@link #fetchPages(IntFunction, Predicate, PageHandler, int, int)}.
+     *
+     * @param <P> page type
+     */
+    @FunctionalInterface
+    protected interface PageHandler<P> {
+
+        /**
+         * @param page the page
+         * @throws InterruptedException if interrupted while enqueuing
+         */
+        void handle(P page) throws InterruptedException;
+
+    }
+
+    /**
+     * Creates the executor of page prefetches.
+     */
+    @PostConstruct
+    public void init() {
+        prefetchExecutor = Executors.newFixedThreadPool(Math.max(1, prefetchThreads));
+    }
+
+    /**
+     * Stops the executor of page prefetches.
+     */
+    @PreDestroy
+    public void shutdownExecutor() {
+        prefetchExecutor.shutdownNow();
+    }
+
     /**
      * Collects nodes asynchronously by delegating to
      * {@link #collectNodes(CollectorConfig)}.
@@ -50,4 +110,92 @@ public abstract class AbstractNodeCollector extends BaseComponent implements Nod
         return CompletableFuture.runAsync(() -> collectNodes(config));
     }
 
+    /**
+     * Pages through an offset based listing, fetching up to {@code readAhead}
+     * pages ahead of the one being handled so that the network is not idle
+     * while the ids of a page are being enqueued.
+     * <p>
+     * Pages are handled in order. Further pages are only requested once a
+     * page reports that more items follow, hence single page listings cost a
+     * single request; near the end of a listing at most {@code readAhead - 1}
+     * requests return pages that are discarded. Prefetches of all the
+     * listings of the collector run on at most
+     * {@code application.prefetch-threads} threads (default 8), any further
+     * one waiting for a free thread.
+     *
+     * @param fetchPage function returning the page at the given skip count
+     * @param hasMore   whether more items follow a page
+     * @param handler   handler of each page
+     * @param batchSize page size
+     * @param readAhead number of pages fetched in advance, {@code 0} to page
+     *                  sequentially
+     * @param <P>       page type
+     * @throws InterruptedException if interrupted while enqueuing
+     */
+    protected <P> void fetchPages(IntFunction<P> fetchPage, Predicate<P> hasMore, PageHandler<P> handler, int batchSize, int readAhead) throws InterruptedException {
+        val pending = new ArrayDeque<CompletableFuture<P>>();
+        pending.add(CompletableFuture.completedFuture(fetchPage.apply(0)));
+        var skipCount = batchSize;
+        try {
+            while (!pending.isEmpty()) {
+                P page;
+                try {
+                    page = pending.remove().join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof RuntimeException r ? r : e;
+                }
+                val more = hasMore.test(page);
+                // keep the next pages in flight while this one is handled
+                while (more && pending.size() < readAhead) {
+                    val pageSkipCount = skipCount;
+                    pending.add(CompletableFuture.supplyAsync(() -> fetchPage.apply(pageSkipCount), prefetchExecutor));
+                    skipCount += batchSize;
+                }
+                handler.handle(page);
+                if (!more) {
+                    break;
+                }
+                if (pending.isEmpty()) {
+                    pending.add(CompletableFuture.completedFuture(fetchPage.apply(skipCount)));
+                    skipCount += batchSize;
+                }
+            }
+        } finally {
+            pending.forEach(f -> f.cancel(false));
+        }
+    }
+
+    /**
+     * Enqueues a node along with what the collector knows about it, see
+     * {@link NodeHintService}.
+     *
+     * @param nodeId   id of the node
+     * @param parentId id of the primary parent
+     * @param path     display path of the parent folder
+     * @throws InterruptedException if interrupted while waiting for space in
+     *                              the queue
+     */
+    protected void enqueue(String nodeId, String parentId, String path) throws InterruptedException {
+        nodeHintService.put(nodeId, parentId, path);
+        queue.put(nodeId);
+    }
+
+    /**
+     * Enqueues a node whose content size is known, in the large file lane
+     * when the size reaches its threshold (see {@link SizeLaneService}).
+     *
+     * @param nodeId   id of the node
+     * @param parentId id of the primary parent, or {@code null}
+     * @param path     display path of the parent folder, or {@code null}
+     * @param size     content size in bytes, or {@code null} if unknown
+     * @throws InterruptedException if interrupted while waiting for space in
+     *                              the queue
+     */
+    protected void enqueue(String nodeId, String parentId, String path, Long size) throws InterruptedException {
+        if (parentId != null || path != null) {
+            nodeHintService.put(nodeId, parentId, path);
+        }
+        (sizeLaneService.isLarge(size) ? sizeLaneService.getLargeFileQueue() : queue).put(nodeId);
+    }
+
 }
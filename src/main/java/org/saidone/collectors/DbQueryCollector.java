@@ -0,0 +1,184 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.collectors;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.saidone.model.alfresco.ContentModel;
+import org.saidone.model.config.CollectorConfig;
+import org.saidone.utils.CastUtils;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects node identifiers matching a property query run directly on the
+ * Alfresco database, bypassing the search index.
+ * <p>
+ * Nodes are selected by type ({@code types}, default {@code cm:content};
+ * subtypes have to be listed as well), by aspects ({@code aspects}, all
+ * required) and by property values ({@code properties}): a map of property
+ * names to the expected value, where {@code null} matches nodes with no value
+ * for the property. Strings are compared with the stored text (dates included,
+ * in ISO 8601 format), integers, decimals and booleans with the corresponding
+ * typed value. {@code store}, {@code modified-after} and
+ * {@code modified-before} are supported as in {@link DbTreeCollector}.
+ * <p>
+ * Unless another {@code store} is given, only nodes of
+ * {@code workspace://SpacesStore} are selected, leaving out archived nodes
+ * and frozen versions. Matching identifiers are read in pages of
+ * {@code fetch-size} rows (default 10000) ordered by database id, each with a
+ * short autocommit statement, so that no transaction stays open while the
+ * consumers drain the queue.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DbQueryCollector extends AbstractDbNodeCollector {
+
+    private static final String SQL_QUERY = """
+        SELECT n.id AS id, n.uuid AS uuid
+        FROM alf_node n
+        WHERE n.type_qname_id IN (%s)%s
+          AND n.id > ?
+        ORDER BY n.id
+        LIMIT ?
+        """;
+
+    private static final String DEFAULT_STORE = "workspace://SpacesStore";
+
+    @Override
+    public void collectNodes(CollectorConfig config) {
+        long counter = 0;
+        try (val conn = getConnection(config)) {
+            conn.setAutoCommit(true);
+            conn.setReadOnly(true);
+            val params = new ArrayList<Object>();
+            val sql = buildQuery(conn, config, params);
+            log.debug("DB query: {}", sql);
+            val pageSize = config.getArg("fetch-size") != null ? (int) config.getArg("fetch-size") : 10_000;
+            try (val pstmt = conn.prepareStatement(sql)) {
+                for (var i = 0; i < params.size(); i++) {
+                    pstmt.setObject(i + 1, params.get(i));
+                }
+                long lastId = 0;
+                int rows;
+                do {
+                    pstmt.setLong(params.size() + 1, lastId);
+                    pstmt.setInt(params.size() + 2, pageSize);
+                    rows = 0;
+                    try (val rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            lastId = rs.getLong("id");
+                            rows++;
+                            queue.put(rs.getString("uuid"));
+                            counter++;
+                            if (counter % 10_000 == 0) {
+                                log.info("Queued {} UUIDs from DB query so far", counter);
+                            }
+                        }
+                    }
+                } while (rows == pageSize);
+            }
+            log.info("Total UUIDs extracted from DB and queued: {}", counter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("DB query interrupted after {} UUIDs: {}", counter, e.getMessage());
+        } catch (SQLException e) {
+            log.error("Error during DB query after {} UUIDs: {}", counter, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compiles the configured filter to SQL.
+     *
+     * @param conn   database connection
+     * @param config collector configuration
+     * @param params receives the values of the parameters of the query, in
+     *               order
+     * @return the SQL statement
+     * @throws SQLException if a lookup fails
+     */
+    private static String buildQuery(Connection conn, CollectorConfig config, List<Object> params) throws SQLException {
+        val namespaces = getNamespaces(config);
+        val types = config.getArg("types") != null ? CastUtils.castToListOfStrings(config.getArg("types")) : List.of(ContentModel.TYPE_CONTENT);
+        val filterParams = new ArrayList<String>();
+        val filter = new StringBuilder(getNodeFilter(conn, config, namespaces, "n", DEFAULT_STORE, filterParams));
+        params.addAll(filterParams);
+        if (config.getArg("properties") != null) {
+            for (val property : CastUtils.castToMapOfObjectObject(config.getArg("properties"), String.class, Object.class).entrySet()) {
+                val qNameIds = getQNameIds(conn, List.of(property.getKey()), namespaces);
+                val value = property.getValue();
+                if (value == null) {
+                    if (!qNameIds.isEmpty()) {
+                        filter.append(String.format(
+                                "\n  AND NOT EXISTS (SELECT 1 FROM alf_node_properties p WHERE p.node_id = n.id AND p.qname_id = %d AND p.persisted_type_n <> 0)",
+                                qNameIds.get(0)));
+                    }
+                } else if (qNameIds.isEmpty()) {
+                    filter.append("\n  AND FALSE");
+                } else {
+                    filter.append(String.format(
+                            "\n  AND EXISTS (SELECT 1 FROM alf_node_properties p WHERE p.node_id = n.id AND p.qname_id = %d AND %s)",
+                            qNameIds.get(0), getValueCondition(value)));
+                    params.add(value);
+                    if (isDecimal(value)) {
+                        params.add(value);
+                    }
+                }
+            }
+        }
+        return SQL_QUERY.formatted(toSqlList(getQNameIds(conn, types, namespaces)), filter);
+    }
+
+    /**
+     * Returns the condition matching a value in the column of
+     * {@code alf_node_properties} holding values of its kind. Decimals are
+     * looked up in both the {@code d:double} and {@code d:float} columns and
+     * take two parameters.
+     *
+     * @param value expected value
+     * @return the condition
+     */
+    private static String getValueCondition(Object value) {
+        if (value instanceof Boolean) {
+            return "p.boolean_value = ?";
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return "p.long_value = ?";
+        }
+        if (isDecimal(value)) {
+            return "(p.double_value = ? OR p.float_value = CAST(? AS REAL))";
+        }
+        return "p.string_value = ?";
+    }
+
+    /**
+     * @param value expected value
+     * @return whether the value is a decimal number
+     */
+    private static boolean isDecimal(Object value) {
+        return value instanceof Number && !(value instanceof Integer) && !(value instanceof Long);
+    }
+
+}
\ No newline at end of file
@@ -21,11 +21,24 @@ package org.saidone.collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.saidone.model.alfresco.ContentModel;
 import org.saidone.model.config.CollectorConfig;
+import org.saidone.utils.CastUtils;
 import org.springframework.stereotype.Component;
 
+import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 /**
  * Collects node identifiers by querying the Alfresco database directly.
@@ -41,11 +54,38 @@ import java.sql.SQLException;
  *   <li>{@code db-user} - Database username</li>
  *   <li>{@code db-password} - Database password</li>
  * </ul>
+ * <p>
+ * With {@code with-paths} set to {@code true}, the display path and the
+ * parent of each node are built along the walk and handed over to the
+ * processors (see {@link org.saidone.service.NodeHintService}). Only primary
+ * associations are followed in that case, so that each node is reached
+ * through its actual path.
+ * <p>
+ * With {@code parallelism} greater than one, the folders of the tree are
+ * loaded first; their documents are then extracted by as many workers, each
+ * with its own connection, taking batches of {@code folder-batch-size}
+ * folders (default 1000) from a shared queue.
+ * <p>
+ * With {@code strategy} set to {@code bfs} the tree is walked level by level
+ * instead, with short autocommit statements over batches of
+ * {@code folder-batch-size} folders, so that no transaction stays open for
+ * the whole job.
+ * <p>
+ * Folder types ({@code folder-types}, by default any type whose local name is
+ * {@code folder}, {@code site}, {@code sites}, {@code sitelist} or
+ * {@code folder-templates}, whatever its namespace) and document types
+ * ({@code types}, default {@code cm:content}) are resolved to qname ids
+ * before the walk. The database knows nothing of the type hierarchy, so
+ * subtypes to be collected have to be listed as well. Documents can further
+ * be restricted to a store ({@code store}), to nodes having all the given
+ * {@code aspects} and to a {@code modified-after}/{@code modified-before}
+ * window. Prefixes other than the Alfresco ones are mapped to their URIs with
+ * {@code namespaces}.
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
-public class DbTreeCollector extends AbstractNodeCollector {
+public class DbTreeCollector extends AbstractDbNodeCollector {
 
     private static final String SQL_QUERY = """
         WITH RECURSIVE folder_tree AS (
@@ -57,19 +97,188 @@ public class DbTreeCollector extends AbstractNodeCollector {
             FROM alf_node n
             JOIN alf_child_assoc c ON c.child_node_id = n.id
             JOIN folder_tree ac ON c.parent_node_id = ac.id
-            JOIN alf_qname q ON n.type_qname_id = q.id
-            WHERE q.local_name IN ('folder', 'site', 'sitelist', 'folder-templates')
+            WHERE n.type_qname_id IN (%1$s)
         )
         SELECT n_doc.uuid AS uuid
         FROM folder_tree ac
         JOIN alf_child_assoc c_doc ON c_doc.parent_node_id = ac.id
         JOIN alf_node n_doc ON c_doc.child_node_id = n_doc.id
-        JOIN alf_qname q_doc ON n_doc.type_qname_id = q_doc.id
-        WHERE q_doc.local_name = 'content'
+        WHERE n_doc.type_qname_id IN (%2$s)%3$s
+        """;
+
+    private static final String SQL_QUERY_WITH_PATHS = """
+        WITH RECURSIVE folder_tree AS (
+            SELECT id, uuid, CAST(? AS VARCHAR) AS path
+            FROM alf_node
+            WHERE uuid = ?
+            UNION ALL
+            SELECT n.id, n.uuid, ac.path || '/' || p.string_value
+            FROM alf_node n
+            JOIN alf_child_assoc c ON c.child_node_id = n.id AND c.is_primary = true
+            JOIN folder_tree ac ON c.parent_node_id = ac.id
+            JOIN alf_node_properties p ON p.node_id = n.id AND p.qname_id = %4$s
+            WHERE n.type_qname_id IN (%1$s)
+        )
+        SELECT n_doc.uuid AS uuid, ac.uuid AS parent_uuid, ac.path AS path
+        FROM folder_tree ac
+        JOIN alf_child_assoc c_doc ON c_doc.parent_node_id = ac.id AND c_doc.is_primary = true
+        JOIN alf_node n_doc ON c_doc.child_node_id = n_doc.id
+        WHERE n_doc.type_qname_id IN (%2$s)%3$s
+        """;
+
+    private static final String SQL_ROOT_PATH = """
+        WITH RECURSIVE ancestors AS (
+            SELECT id, 0 AS depth
+            FROM alf_node
+            WHERE uuid = ?
+            UNION ALL
+            SELECT c.parent_node_id, a.depth + 1
+            FROM alf_child_assoc c
+            JOIN ancestors a ON c.child_node_id = a.id
+            WHERE c.is_primary = true
+        )
+        SELECT p.string_value AS name
+        FROM ancestors a
+        JOIN alf_node_properties p ON p.node_id = a.id AND p.qname_id = ?
+        ORDER BY a.depth DESC
+        """;
+
+    private static final String SQL_FOLDERS = """
+        WITH RECURSIVE folder_tree AS (
+            SELECT id, uuid
+            FROM alf_node
+            WHERE uuid = ?
+            UNION ALL
+            SELECT n.id, n.uuid
+            FROM alf_node n
+            JOIN alf_child_assoc c ON c.child_node_id = n.id
+            JOIN folder_tree ac ON c.parent_node_id = ac.id
+            WHERE n.type_qname_id IN (%1$s)
+        )
+        SELECT id, uuid, NULL AS path
+        FROM folder_tree
+        """;
+
+    private static final String SQL_FOLDERS_WITH_PATHS = """
+        WITH RECURSIVE folder_tree AS (
+            SELECT id, uuid, CAST(? AS VARCHAR) AS path
+            FROM alf_node
+            WHERE uuid = ?
+            UNION ALL
+            SELECT n.id, n.uuid, ac.path || '/' || p.string_value
+            FROM alf_node n
+            JOIN alf_child_assoc c ON c.child_node_id = n.id AND c.is_primary = true
+            JOIN folder_tree ac ON c.parent_node_id = ac.id
+            JOIN alf_node_properties p ON p.node_id = n.id AND p.qname_id = %4$s
+            WHERE n.type_qname_id IN (%1$s)
+        )
+        SELECT id, uuid, path
+        FROM folder_tree
+        """;
+
+    private static final String SQL_DOCUMENTS = """
+        SELECT n_doc.uuid AS uuid, c.parent_node_id AS parent_id
+        FROM alf_child_assoc c
+        JOIN alf_node n_doc ON c.child_node_id = n_doc.id
+        WHERE c.parent_node_id = ANY(?)
+          AND n_doc.type_qname_id IN (%2$s)%3$s
+        """;
+
+    private static final String SQL_DOCUMENTS_PRIMARY = """
+        SELECT n_doc.uuid AS uuid, c.parent_node_id AS parent_id
+        FROM alf_child_assoc c
+        JOIN alf_node n_doc ON c.child_node_id = n_doc.id
+        WHERE c.parent_node_id = ANY(?) AND c.is_primary = true
+          AND n_doc.type_qname_id IN (%2$s)%3$s
+        """;
+
+    private static final String SQL_ROOT = """
+        SELECT id, uuid
+        FROM alf_node
+        WHERE uuid = ?
+        """;
+
+    private static final String SQL_SUBFOLDERS = """
+        SELECT n.id AS id, n.uuid AS uuid, c.parent_node_id AS parent_id, NULL AS name
+        FROM alf_child_assoc c
+        JOIN alf_node n ON c.child_node_id = n.id
+        WHERE c.parent_node_id = ANY(?)
+          AND n.type_qname_id IN (%1$s)
+        """;
+
+    private static final String SQL_SUBFOLDERS_WITH_NAMES = """
+        SELECT n.id AS id, n.uuid AS uuid, c.parent_node_id AS parent_id, p.string_value AS name
+        FROM alf_child_assoc c
+        JOIN alf_node n ON c.child_node_id = n.id
+        JOIN alf_node_properties p ON p.node_id = n.id AND p.qname_id = %4$s
+        WHERE c.parent_node_id = ANY(?) AND c.is_primary = true
+          AND n.type_qname_id IN (%1$s)
         """;
 
+    /**
+     * Local names of the folder types walked by default, in any namespace.
+     */
+    private static final List<String> DEFAULT_FOLDER_LOCAL_NAMES = List.of("folder", "site", "sites", "sitelist", "folder-templates");
+
+    private String folderTypeIds;
+    private String contentTypeIds;
+    private String documentFilter;
+    private List<String> documentFilterParams;
+    private long nameQNameId;
+
+    /**
+     * A folder of the tree.
+     *
+     * @param id   database id
+     * @param uuid node id
+     * @param path display path, or {@code null}
+     */
+    private record FolderRow(long id, String uuid, String path) {
+    }
+
     @Override
     public void collectNodes(CollectorConfig config) {
+        val bfs = "bfs".equals(config.getArg("strategy"));
+        try (val conn = getConnection(config)) {
+            conn.setReadOnly(true);
+            setFilters(conn, config);
+        } catch (SQLException e) {
+            log.error("Error resolving DB tree filters: {}", e.getMessage(), e);
+            return;
+        }
+        if (bfs) {
+            extractUuidsBreadthFirst(
+                    (String) config.getArg("root-node-id"),
+                    (String) config.getArg("db-url"),
+                    (String) config.getArg("db-user"),
+                    (String) config.getArg("db-password"),
+                    Boolean.TRUE.equals(config.getArg("with-paths")),
+                    config.getArg("folder-batch-size") != null ? (int) config.getArg("folder-batch-size") : 1000
+            );
+            return;
+        }
+        val parallelism = config.getArg("parallelism") != null ? (int) config.getArg("parallelism") : 1;
+        if (parallelism > 1) {
+            extractUuidsInParallel(
+                    (String) config.getArg("root-node-id"),
+                    (String) config.getArg("db-url"),
+                    (String) config.getArg("db-user"),
+                    (String) config.getArg("db-password"),
+                    Boolean.TRUE.equals(config.getArg("with-paths")),
+                    parallelism,
+                    config.getArg("folder-batch-size") != null ? (int) config.getArg("folder-batch-size") : 1000
+            );
+            return;
+        }
+        if (Boolean.TRUE.equals(config.getArg("with-paths"))) {
+            extractUuidsAndPathsByFolder(
+                    (String) config.getArg("root-node-id"),
+                    (String) config.getArg("db-url"),
+                    (String) config.getArg("db-user"),
+                    (String) config.getArg("db-password")
+            );
+            return;
+        }
         extractUuidsByFolder(
                 (String) config.getArg("root-node-id"),
                 (String) config.getArg("db-url"),
@@ -81,11 +290,12 @@ public class DbTreeCollector extends AbstractNodeCollector {
     public void extractUuidsByFolder(String rootUuid, String dbUrl, String user, String password) {
         long counter = 0;
         try (val conn = DriverManager.getConnection(dbUrl, user, password);
-             val pstmt = conn.prepareStatement(SQL_QUERY)) {
+             val pstmt = conn.prepareStatement(sql(SQL_QUERY))) {
             conn.setAutoCommit(false);
             conn.setReadOnly(true);
             pstmt.setFetchSize(1000);
             pstmt.setString(1, rootUuid);
+            setFilterParams(pstmt, 2);
             try (val rs = pstmt.executeQuery()) {
                 while (rs.next()) {
                     queue.put(rs.getString("uuid"));
@@ -105,4 +315,294 @@ public class DbTreeCollector extends AbstractNodeCollector {
         }
     }
 
+    /**
+     * Same as {@link #extractUuidsByFolder(String, String, String, String)},
+     * also registering the display path and the parent of each node.
+     *
+     * @param rootUuid UUID of the root folder node
+     * @param dbUrl    JDBC connection URL
+     * @param user     database username
+     * @param password database password
+     */
+    public void extractUuidsAndPathsByFolder(String rootUuid, String dbUrl, String user, String password) {
+        long counter = 0;
+        try (val conn = DriverManager.getConnection(dbUrl, user, password)) {
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            val rootPath = getRootPath(conn, rootUuid);
+            try (val pstmt = conn.prepareStatement(sql(SQL_QUERY_WITH_PATHS))) {
+                pstmt.setFetchSize(1000);
+                pstmt.setString(1, rootPath);
+                pstmt.setString(2, rootUuid);
+                setFilterParams(pstmt, 3);
+                try (val rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        enqueue(rs.getString("uuid"), rs.getString("parent_uuid"), rs.getString("path"));
+                        counter++;
+                        if (counter % 10_000 == 0) {
+                            log.info("Queued {} UUIDs from DB tree so far", counter);
+                        }
+                    }
+                }
+            }
+            conn.commit();
+            log.info("Total UUIDs extracted from DB and queued: {}", counter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("DB tree extraction interrupted after {} UUIDs: {}", counter, e.getMessage());
+        } catch (SQLException e) {
+            log.error("Error during DB tree extraction after {} UUIDs: {}", counter, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Builds the display path of the root folder from the names of its
+     * primary ancestors.
+     *
+     * @param conn     database connection
+     * @param rootUuid UUID of the root folder node
+     * @return the display path, e.g. {@code /Company Home/Sites}
+     * @throws SQLException if the query fails
+     */
+    private String getRootPath(Connection conn, String rootUuid) throws SQLException {
+        val path = new StringBuilder();
+        try (val pstmt = conn.prepareStatement(SQL_ROOT_PATH)) {
+            pstmt.setString(1, rootUuid);
+            pstmt.setLong(2, nameQNameId);
+            try (val rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    path.append('/').append(rs.getString("name"));
+                }
+            }
+        }
+        return path.toString();
+    }
+
+    /**
+     * Loads the folders of the tree, then extracts their documents with
+     * several workers in parallel.
+     *
+     * @param rootUuid        UUID of the root folder node
+     * @param dbUrl           JDBC connection URL
+     * @param user            database username
+     * @param password        database password
+     * @param withPaths       whether to register the paths of the nodes
+     * @param parallelism     number of workers, each with its own connection
+     * @param folderBatchSize number of folders whose documents are extracted
+     *                        by a single statement
+     */
+    public void extractUuidsInParallel(String rootUuid, String dbUrl, String user, String password, boolean withPaths, int parallelism, int folderBatchSize) {
+        val counter = new AtomicLong();
+        List<FolderRow> folders;
+        try (val conn = DriverManager.getConnection(dbUrl, user, password)) {
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            folders = loadFolders(conn, rootUuid, withPaths);
+            conn.commit();
+        } catch (SQLException e) {
+            log.error("Error loading DB tree folders: {}", e.getMessage(), e);
+            return;
+        }
+        log.info("Loaded {} folders from DB tree", folders.size());
+        val foldersById = new HashMap<Long, FolderRow>();
+        folders.forEach(f -> foldersById.put(f.id(), f));
+        val batches = new ConcurrentLinkedQueue<Long[]>();
+        for (var i = 0; i < folders.size(); i += folderBatchSize) {
+            batches.add(folders.subList(i, Math.min(folders.size(), i + folderBatchSize)).stream().map(FolderRow::id).toArray(Long[]::new));
+        }
+        val sql = sql(withPaths ? SQL_DOCUMENTS_PRIMARY : SQL_DOCUMENTS);
+        val workers = Executors.newFixedThreadPool(parallelism);
+        try {
+            val futures = IntStream.range(0, parallelism)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                        try (val conn = DriverManager.getConnection(dbUrl, user, password);
+                             val pstmt = conn.prepareStatement(sql)) {
+                            // a cursor-based fetch needs a transaction, committed after each batch
+                            conn.setAutoCommit(false);
+                            conn.setReadOnly(true);
+                            pstmt.setFetchSize(1000);
+                            Long[] batch;
+                            while ((batch = batches.poll()) != null) {
+                                pstmt.setArray(1, conn.createArrayOf("bigint", batch));
+                                setFilterParams(pstmt, 2);
+                                try (val rs = pstmt.executeQuery()) {
+                                    while (rs.next()) {
+                                        val parent = foldersById.get(rs.getLong("parent_id"));
+                                        if (withPaths) {
+                                            enqueue(rs.getString("uuid"), parent.uuid(), parent.path());
+                                        } else {
+                                            queue.put(rs.getString("uuid"));
+                                        }
+                                        if (counter.incrementAndGet() % 10_000 == 0) {
+                                            log.info("Queued {} UUIDs from DB tree so far", counter.get());
+                                        }
+                                    }
+                                }
+                                conn.commit();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            log.warn("DB tree extraction interrupted after {} UUIDs: {}", counter.get(), e.getMessage());
+                        } catch (SQLException e) {
+                            log.error("Error during DB tree extraction after {} UUIDs: {}", counter.get(), e.getMessage(), e);
+                        }
+                    }, workers))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(futures).join();
+        } finally {
+            workers.shutdown();
+        }
+        log.info("Total UUIDs extracted from DB and queued: {}", counter.get());
+    }
+
+    /**
+     * Walks the tree level by level without a recursive query: the documents
+     * and the subfolders of each batch of folders are read with plain
+     * {@code ANY(?)} statements in autocommit mode, so that no transaction is
+     * kept open while the consumers drain the queue and the first documents
+     * are queued right away.
+     *
+     * @param rootUuid        UUID of the root folder node
+     * @param dbUrl           JDBC connection URL
+     * @param user            database username
+     * @param password        database password
+     * @param withPaths       whether to register the paths of the nodes
+     * @param folderBatchSize number of folders read by a single statement
+     */
+    public void extractUuidsBreadthFirst(String rootUuid, String dbUrl, String user, String password, boolean withPaths, int folderBatchSize) {
+        long counter = 0;
+        try (val conn = DriverManager.getConnection(dbUrl, user, password);
+             val documents = conn.prepareStatement(sql(withPaths ? SQL_DOCUMENTS_PRIMARY : SQL_DOCUMENTS));
+             val subfolders = conn.prepareStatement(sql(withPaths ? SQL_SUBFOLDERS_WITH_NAMES : SQL_SUBFOLDERS))) {
+            conn.setAutoCommit(true);
+            conn.setReadOnly(true);
+            var level = new ArrayList<FolderRow>();
+            try (val pstmt = conn.prepareStatement(SQL_ROOT)) {
+                pstmt.setString(1, rootUuid);
+                try (val rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        level.add(new FolderRow(rs.getLong("id"), rs.getString("uuid"), withPaths ? getRootPath(conn, rootUuid) : null));
+                    }
+                }
+            }
+            val visited = new HashSet<Long>();
+            level.forEach(f -> visited.add(f.id()));
+            var depth = 0;
+            while (!level.isEmpty()) {
+                val next = new ArrayList<FolderRow>();
+                for (var i = 0; i < level.size(); i += folderBatchSize) {
+                    val batch = level.subList(i, Math.min(level.size(), i + folderBatchSize));
+                    val foldersById = new HashMap<Long, FolderRow>();
+                    batch.forEach(f -> foldersById.put(f.id(), f));
+                    val ids = conn.createArrayOf("bigint", foldersById.keySet().toArray());
+                    documents.setArray(1, ids);
+                    setFilterParams(documents, 2);
+                    try (val rs = documents.executeQuery()) {
+                        while (rs.next()) {
+                            val parent = foldersById.get(rs.getLong("parent_id"));
+                            if (withPaths) {
+                                enqueue(rs.getString("uuid"), parent.uuid(), parent.path());
+                            } else {
+                                queue.put(rs.getString("uuid"));
+                            }
+                            counter++;
+                            if (counter % 10_000 == 0) {
+                                log.info("Queued {} UUIDs from DB tree so far", counter);
+                            }
+                        }
+                    }
+                    subfolders.setArray(1, ids);
+                    try (val rs = subfolders.executeQuery()) {
+                        while (rs.next()) {
+                            if (visited.add(rs.getLong("id"))) {
+                                val parent = foldersById.get(rs.getLong("parent_id"));
+                                next.add(new FolderRow(rs.getLong("id"), rs.getString("uuid"),
+                                        withPaths ? parent.path() + "/" + rs.getString("name") : null));
+                            }
+                        }
+                    }
+                }
+                log.debug("DB tree level {} done: {} folders, {} subfolders", depth++, level.size(), next.size());
+                level = next;
+            }
+            log.info("Total UUIDs extracted from DB and queued: {}", counter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("DB tree extraction interrupted after {} UUIDs: {}", counter, e.getMessage());
+        } catch (SQLException e) {
+            log.error("Error during DB tree extraction after {} UUIDs: {}", counter, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads the folders of the tree, root included.
+     *
+     * @param conn      database connection
+     * @param rootUuid  UUID of the root folder node
+     * @param withPaths whether to build the display path of each folder
+     * @return the folders, in no particular order
+     * @throws SQLException if the query fails
+     */
+    private List<FolderRow> loadFolders(Connection conn, String rootUuid, boolean withPaths) throws SQLException {
+        val folders = new ArrayList<FolderRow>();
+        try (val pstmt = conn.prepareStatement(sql(withPaths ? SQL_FOLDERS_WITH_PATHS : SQL_FOLDERS))) {
+            pstmt.setFetchSize(1000);
+            var index = 1;
+            if (withPaths) {
+                pstmt.setString(index++, getRootPath(conn, rootUuid));
+            }
+            pstmt.setString(index, rootUuid);
+            try (val rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    folders.add(new FolderRow(rs.getLong("id"), rs.getString("uuid"), rs.getString("path")));
+                }
+            }
+        }
+        return folders;
+    }
+
+    /**
+     * Resolves the types, aspects, store and dates to filter on, so that the
+     * queries compare plain ids instead of joining the qname tables.
+     *
+     * @param conn   database connection
+     * @param config collector configuration
+     * @throws SQLException if a lookup fails
+     */
+    private void setFilters(Connection conn, CollectorConfig config) throws SQLException {
+        val namespaces = getNamespaces(config);
+        val types = config.getArg("types") != null ? CastUtils.castToListOfStrings(config.getArg("types")) : List.of(ContentModel.TYPE_CONTENT);
+        folderTypeIds = toSqlList(config.getArg("folder-types") != null
+                ? getQNameIds(conn, CastUtils.castToListOfStrings(config.getArg("folder-types")), namespaces)
+                : getQNameIdsByLocalName(conn, DEFAULT_FOLDER_LOCAL_NAMES));
+        contentTypeIds = toSqlList(getQNameIds(conn, types, namespaces));
+        nameQNameId = getQNameIds(conn, List.of(ContentModel.PROP_NAME), namespaces).stream().findFirst().orElse(-1L);
+        documentFilterParams = new ArrayList<>();
+        documentFilter = getNodeFilter(conn, config, namespaces, "n_doc", null, documentFilterParams);
+        log.debug("Folder types {}, content types {}, document filter: {}", folderTypeIds, contentTypeIds, documentFilter);
+    }
+
+    /**
+     * Fills a query template with the resolved ids and filters.
+     *
+     * @param template one of the SQL templates of this class
+     * @return the SQL statement
+     */
+    private String sql(String template) {
+        return template.formatted(folderTypeIds, contentTypeIds, documentFilter, nameQNameId);
+    }
+
+    /**
+     * Binds the parameters of the document filter.
+     *
+     * @param pstmt statement built with {@link #sql(String)}
+     * @param index index of the first filter parameter
+     * @throws SQLException if a parameter cannot be set
+     */
+    private void setFilterParams(PreparedStatement pstmt, int index) throws SQLException {
+        for (val param : documentFilterParams) {
+            pstmt.setString(index++, param);
+        }
+    }
+
 }
\ No newline at end of file
@@ -22,15 +22,35 @@ import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.apache.logging.log4j.util.Strings;
 import org.saidone.model.config.CollectorConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Collects node identifiers from a text file where each line contains a node
  * id.
+ * <p>
+ * The file is streamed, so its size is not bound by the heap, and may be gzip
+ * compressed (detected from its content). Each line is trimmed, stripped of
+ * the {@code workspace://SpacesStore/} prefix and lower cased; blank lines
+ * are skipped and lines that are not a valid UUID, including references to
+ * other stores, are logged and skipped. The first {@code start-offset} lines
+ * are skipped, so that an interrupted run can be resumed from the offset last
+ * logged. The logged offset only counts the lines whose ids have left the
+ * queue and are not being processed anymore.
  */
 @Component
 @Slf4j
@@ -38,6 +58,18 @@ public class NodeListCollector extends AbstractNodeCollector {
 
     public static final String NODE_LIST_ARG = "node-list-file";
 
+    private static final Pattern UUID_PATTERN = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final String WORKSPACE_PREFIX = "workspace://SpacesStore/";
+
+    @Value("${application.consumer-threads}")
+    private int consumerThreads;
+
+    @Value("${application.queue-size}")
+    private int queueSize;
+
     /**
      * Reads node identifiers from the file specified by the
      * {@code node-list-file} argument and enqueues them for processing.
@@ -47,15 +79,106 @@ public class NodeListCollector extends AbstractNodeCollector {
     @Override
     public void collectNodes(CollectorConfig config) {
         if (Strings.isNotBlank((String) config.getArg(NODE_LIST_ARG))) {
-            try {
-                for (val i : Files.readAllLines(new File((String) config.getArg(NODE_LIST_ARG)).toPath())) {
-                    queue.put(i);
+            val startOffset = config.getArg("start-offset") != null ? ((Number) config.getArg("start-offset")).longValue() : 0L;
+            long lineNumber = 0;
+            long counter = 0;
+            // lines of the ids possibly still queued or being processed
+            val pendingLines = new ArrayDeque<Long>();
+            try (val reader = open(Path.of((String) config.getArg(NODE_LIST_ARG)))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (lineNumber <= startOffset) {
+                        continue;
+                    }
+                    val nodeId = normalize(line);
+                    if (nodeId == null) {
+                        continue;
+                    }
+                    if (!UUID_PATTERN.matcher(nodeId).matches()) {
+                        log.warn("Skipping invalid node id at line {}: {}", lineNumber, line);
+                        continue;
+                    }
+                    queue.put(nodeId);
+                    pendingLines.addLast(lineNumber);
+                    if (pendingLines.size() > queueSize + consumerThreads) {
+                        pendingLines.removeFirst();
+                    }
+                    if (++counter % 100_000 == 0) {
+                        log.info("Queued {} node ids so far, start-offset to resume: {}", counter, getResumeOffset(pendingLines, startOffset));
+                    }
                 }
+                log.info("Total node ids read from list and queued: {}", counter);
             } catch (InterruptedException | IOException e) {
                 log.trace(e.getMessage(), e);
-                log.warn(e.getMessage());
+                log.warn("{} (start-offset to resume: {})", e.getMessage(), getResumeOffset(pendingLines, startOffset));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of lines that can be skipped when resuming, i.e.
+     * the lines before the oldest id that may not have been processed yet:
+     * the ids still in the queue plus one per consumer thread.
+     *
+     * @param pendingLines lines of the most recently queued ids, oldest first
+     * @param startOffset  offset of the current run
+     * @return the offset to resume from
+     */
+    long getResumeOffset(Deque<Long> pendingLines, long startOffset) {
+        val pending = queue.size() + consumerThreads;
+        if (pendingLines.size() < pending) {
+            return pendingLines.isEmpty() ? startOffset : Math.max(startOffset, pendingLines.getFirst() - 1);
+        }
+        val lines = pendingLines.descendingIterator();
+        for (var i = 1; i < pending; i++) {
+            lines.next();
+        }
+        return lines.next() - 1;
+    }
+
+    /**
+     * Opens the node list, decompressing it on the fly if it is gzip
+     * compressed.
+     *
+     * @param file the node list
+     * @return a reader over the lines of the list
+     * @throws IOException if the file cannot be read or uses an unsupported
+     *                     compression
+     */
+    private static BufferedReader open(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        try {
+            in.mark(4);
+            val magic = in.readNBytes(4);
+            in.reset();
+            if (magic.length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+                in = new GZIPInputStream(in, BUFFER_SIZE);
+            } else if (magic.length == 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5 && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd) {
+                throw new IOException(String.format("%s is zstd compressed, which is not supported: decompress it or use gzip", file));
             }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Normalizes a line of the node list to a bare lower case node id.
+     *
+     * @param line line of the list
+     * @return the node id, or {@code null} for a blank line
+     */
+    private static String normalize(String line) {
+        var nodeId = line.strip();
+        if (nodeId.isEmpty()) {
+            return null;
+        }
+        if (nodeId.regionMatches(true, 0, WORKSPACE_PREFIX, 0, WORKSPACE_PREFIX.length())) {
+            nodeId = nodeId.substring(WORKSPACE_PREFIX.length());
         }
+        return nodeId.toLowerCase(Locale.ROOT);
     }
 
-}
+}
\ No newline at end of file
@@ -22,17 +22,50 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.alfresco.core.handler.NodesApi;
+import org.alfresco.core.model.Node;
 import org.alfresco.core.model.NodeChildAssociationEntry;
-import org.alfresco.core.model.NodeChildAssociationPaging;
 import org.saidone.model.config.CollectorConfig;
+import org.saidone.utils.CastUtils;
 import org.springframework.stereotype.Component;
 
+import java.time.OffsetDateTime;
 import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 /**
  * Walks a node tree starting from a given root node or path and collects the
  * identifiers of all descendant nodes.
+ * <p>
+ * The walk is depth first on a single thread by default. With
+ * {@code walk-parallelism} greater than one, folders are listed by as many
+ * worker threads taking them from a shared frontier. Workers take the most
+ * recently discovered folders first, which keeps the frontier small, and once
+ * it holds {@code max-pending-folders} folders they descend into newly
+ * discovered subfolders themselves instead of adding them to it, so that
+ * memory stays bounded by the depth of the tree. Each worker can also have
+ * {@code read-ahead} pages of its folder being fetched in advance, on the
+ * prefetch threads shared by the collector, hence at most
+ * {@code walk-parallelism} plus {@code application.prefetch-threads}
+ * listings are in flight at any time.
+ * <p>
+ * Nodes to collect can be selected on the server with a {@code where}
+ * clause of the children listing, in which case folders are listed
+ * separately to carry on the walk, and locally by type ({@code types}),
+ * aspects ({@code aspects}, all required) and modification date
+ * ({@code modified-after}, {@code modified-before}) before being enqueued.
+ * Only the node fields these filters need are requested, plus the content
+ * when nodes are split by size (see {@link org.saidone.service.SizeLaneService}).
  */
 @Component
 @RequiredArgsConstructor
@@ -40,39 +73,256 @@ import java.util.Deque;
 public class NodeTreeCollector extends AbstractNodeCollector {
 
     private int batchSize = 100;
+    private int readAhead = 1;
+    private int walkParallelism = 1;
+    private int maxPendingFolders = 100_000;
 
     private final NodesApi nodesApi;
 
+    /**
+     * Fields of the children needed by the walk.
+     */
+    private static final List<String> CHILDREN_FIELDS = List.of("id", "name", "isFolder");
+
+    private static final String WHERE_FOLDERS = "(isFolder=true)";
+
+    private String where = null;
+    private List<String> childrenFields = CHILDREN_FIELDS;
+    private List<String> childrenInclude = null;
+    private Set<String> types = null;
+    private List<String> aspects = null;
+    private OffsetDateTime modifiedAfter = null;
+    private OffsetDateTime modifiedBefore = null;
+
+    /**
+     * Folder still to be visited along with its display path.
+     *
+     * @param nodeId id of the folder
+     * @param path   display path of the folder itself
+     */
+    private record Folder(String nodeId, String path) {
+    }
+
+    /**
+     * Receives the subfolders discovered while listing a folder.
+     */
+    @FunctionalInterface
+    private interface FolderHandler {
+
+        void handle(Folder folder) throws InterruptedException;
+
+    }
+
     private void walk(String rootNodeId) {
-        val nodeStack = new ArrayDeque<String>();
-        nodeStack.push(rootNodeId);
+        val root = new Folder(rootNodeId, getPath(rootNodeId));
+        if (walkParallelism > 1) {
+            walkInParallel(root);
+            return;
+        }
+        val nodeStack = new ArrayDeque<Folder>();
+        nodeStack.push(root);
         while (!nodeStack.isEmpty()) {
-            val nodeId = nodeStack.pop();
+            val folder = nodeStack.pop();
             try {
-                processNodeChildren(nodeId, nodeStack);
+                processNodeChildren(folder, nodeStack::push);
             } catch (Exception e) {
-                log.error("Error processing node {}: {}", nodeId, e.getMessage(), e);
+                log.error("Error processing node {}: {}", folder.nodeId(), e.getMessage(), e);
             }
         }
     }
 
-    private void processNodeChildren(String nodeId, Deque<String> nodeStack) throws InterruptedException {
-        int skipCount = 0;
-        NodeChildAssociationPaging children;
-        do {
-            children = nodesApi.listNodeChildren(nodeId, skipCount, batchSize, null, null, null, null, null, null).getBody();
-            if (children == null || children.getList() == null) {
-                break;
-            }
-            for (val child : children.getList().getEntries().stream().map(NodeChildAssociationEntry::getEntry).toList()) {
-                if (child.isIsFolder()) {
-                    nodeStack.push(child.getId());
+    /**
+     * Walks the tree with {@code walk-parallelism} workers sharing a bounded
+     * frontier of folders still to be listed.
+     *
+     * @param root root of the walk
+     */
+    private void walkInParallel(Folder root) {
+        val frontier = new LinkedBlockingDeque<Folder>();
+        // folders in the frontier or being listed
+        val outstanding = new AtomicInteger(1);
+        frontier.push(root);
+        val workers = Executors.newFixedThreadPool(walkParallelism);
+        try {
+            val futures = IntStream.range(0, walkParallelism)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                        while (outstanding.get() > 0) {
+                            Folder folder;
+                            try {
+                                folder = frontier.pollFirst(100, TimeUnit.MILLISECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                            if (folder == null) {
+                                continue;
+                            }
+                            try {
+                                visit(folder, frontier, outstanding);
+                            } finally {
+                                outstanding.decrementAndGet();
+                            }
+                        }
+                    }, workers))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(futures).join();
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Lists a folder on behalf of a worker, adding its subfolders to the
+     * frontier or, once the frontier is full, descending into them directly.
+     *
+     * @param folder      folder to list
+     * @param frontier    folders still to be listed
+     * @param outstanding number of folders in the frontier or being listed
+     */
+    private void visit(Folder folder, BlockingDeque<Folder> frontier, AtomicInteger outstanding) {
+        try {
+            processNodeChildren(folder, subfolder -> {
+                if (frontier.size() < maxPendingFolders) {
+                    outstanding.incrementAndGet();
+                    frontier.push(subfolder);
                 } else {
-                    queue.put(child.getId());
+                    visit(subfolder, frontier, outstanding);
                 }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Walk interrupted at node {}", folder.nodeId());
+        } catch (Exception e) {
+            log.error("Error processing node {}: {}", folder.nodeId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Resolves the display path of the root of the walk, from which the paths
+     * of its descendants are derived.
+     *
+     * @param nodeId id of the root
+     * @return the display path of the root, or {@code null} if not available
+     */
+    private String getPath(String nodeId) {
+        try {
+            val node = Objects.requireNonNull(nodesApi.getNode(nodeId, List.of("path"), null, null).getBody()).getEntry();
+            val parentPath = node.getPath() != null && node.getPath().getName() != null ? node.getPath().getName().replaceFirst("/+$", "") : "";
+            return String.format("%s/%s", parentPath, node.getName());
+        } catch (Exception e) {
+            log.warn("Could not resolve path of node {}: {}", nodeId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void processNodeChildren(Folder folder, FolderHandler folderHandler) throws InterruptedException {
+        val nodeId = folder.nodeId();
+        if (where == null) {
+            listChildren(nodeId, null, childrenFields, childrenInclude, child -> {
+                if (child.isIsFolder()) {
+                    folderHandler.handle(new Folder(child.getId(), getChildPath(folder, child)));
+                } else if (matches(child)) {
+                    enqueue(child.getId(), nodeId, folder.path(), getSize(child));
+                }
+            });
+            return;
+        }
+        // subfolders, to carry on the walk
+        listChildren(nodeId, WHERE_FOLDERS, CHILDREN_FIELDS, null, child -> folderHandler.handle(new Folder(child.getId(), getChildPath(folder, child))));
+        // nodes to collect, folders are already walked by the listing above
+        listChildren(nodeId, where, childrenFields, childrenInclude, child -> {
+            if (!child.isIsFolder() && matches(child)) {
+                enqueue(child.getId(), nodeId, folder.path(), getSize(child));
             }
-            skipCount += batchSize;
-        } while (children.getList().getPagination() != null && children.getList().getPagination().isHasMoreItems());
+        });
+    }
+
+    /**
+     * Lists the children of a folder page by page.
+     *
+     * @param nodeId  id of the folder
+     * @param where   where clause, or {@code null}
+     * @param fields  fields to return
+     * @param include include flags, or {@code null}
+     * @param handler handler of each child
+     * @throws InterruptedException if interrupted while enqueuing
+     */
+    private void listChildren(String nodeId, String where, List<String> fields, List<String> include, PageHandler<Node> handler) throws InterruptedException {
+        fetchPages(skipCount -> nodesApi.listNodeChildren(nodeId, skipCount, batchSize, null, where, include, null, null, fields).getBody(),
+                children -> children != null && children.getList() != null && children.getList().getPagination() != null && children.getList().getPagination().isHasMoreItems(),
+                children -> {
+                    if (children == null || children.getList() == null) {
+                        return;
+                    }
+                    for (val child : children.getList().getEntries().stream().map(NodeChildAssociationEntry::getEntry).toList()) {
+                        handler.handle(child);
+                    }
+                }, batchSize, readAhead);
+    }
+
+    /**
+     * @param folder parent folder
+     * @param child  child folder
+     * @return display path of the child, or {@code null} if the path of the
+     * parent is not known
+     */
+    private static String getChildPath(Folder folder, Node child) {
+        return folder.path() != null ? String.format("%s/%s", folder.path(), child.getName()) : null;
+    }
+
+    /**
+     * @param child child node
+     * @return content size of the node, or {@code null} if unknown
+     */
+    private static Long getSize(Node child) {
+        return child.getContent() != null ? child.getContent().getSizeInBytes() : null;
+    }
+
+    /**
+     * Evaluates the local type, aspect and date filters.
+     *
+     * @param child child node
+     * @return whether the node has to be collected
+     */
+    private boolean matches(Node child) {
+        if (types != null && !types.contains(child.getNodeType())) {
+            return false;
+        }
+        if (aspects != null && (child.getAspectNames() == null || !child.getAspectNames().containsAll(aspects))) {
+            return false;
+        }
+        if (modifiedAfter != null && (child.getModifiedAt() == null || !child.getModifiedAt().isAfter(modifiedAfter))) {
+            return false;
+        }
+        return modifiedBefore == null || (child.getModifiedAt() != null && child.getModifiedAt().isBefore(modifiedBefore));
+    }
+
+    /**
+     * Sets up the filters and the fields they need from the configuration.
+     *
+     * @param config collector configuration
+     */
+    private void setFilters(CollectorConfig config) {
+        where = (String) config.getArg("where");
+        types = config.getArg("types") != null ? new HashSet<>(CastUtils.castToListOfStrings(config.getArg("types"))) : null;
+        aspects = config.getArg("aspects") != null ? CastUtils.castToListOfStrings(config.getArg("aspects")) : null;
+        modifiedAfter = config.getArg("modified-after") != null ? OffsetDateTime.parse((String) config.getArg("modified-after")) : null;
+        modifiedBefore = config.getArg("modified-before") != null ? OffsetDateTime.parse((String) config.getArg("modified-before")) : null;
+        val fields = new ArrayList<>(CHILDREN_FIELDS);
+        if (types != null) {
+            fields.add("nodeType");
+        }
+        if (aspects != null) {
+            fields.add("aspectNames");
+        }
+        if (modifiedAfter != null || modifiedBefore != null) {
+            fields.add("modifiedAt");
+        }
+        if (sizeLaneService.isEnabled()) {
+            fields.add("content");
+        }
+        childrenFields = fields;
+        childrenInclude = aspects != null ? List.of("aspectNames") : null;
     }
 
     /**
@@ -85,6 +335,10 @@ public class NodeTreeCollector extends AbstractNodeCollector {
     @Override
     public void collectNodes(CollectorConfig config) {
         if (config.getArg("batch-size") != null) this.batchSize = (int) config.getArg("batch-size");
+        if (config.getArg("read-ahead") != null) this.readAhead = (int) config.getArg("read-ahead");
+        if (config.getArg("walk-parallelism") != null) this.walkParallelism = (int) config.getArg("walk-parallelism");
+        if (config.getArg("max-pending-folders") != null) this.maxPendingFolders = (int) config.getArg("max-pending-folders");
+        setFilters(config);
         var nodeId = (String) config.getArg("node-id");
         // Path resolution if node-id is not provided
         if (nodeId == null && config.getArg("path") != null) {
@@ -25,14 +25,32 @@ import lombok.val;
 import org.alfresco.search.handler.SearchApi;
 import org.alfresco.search.model.*;
 import org.saidone.model.config.CollectorConfig;
+import org.saidone.utils.CastUtils;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 
 /**
  * Executes an Alfresco FTS query and enqueues the resulting node identifiers.
+ * <p>
+ * Results are paged with a growing {@code skipCount} by default. Since the
+ * cost of a page grows with its offset, very large result sets can be paged
+ * by key instead ({@code paging} set to {@code keyset}): results are sorted on
+ * {@code keyset-field} and each page is requested with a range query starting
+ * from the last value seen, so that every page costs the same.
+ * <p>
+ * Only the fields needed by the collector itself and by the processor (see
+ * {@link org.saidone.processors.NodeProcessor#getRequiredFields}) are
+ * requested, keeping result pages small.
  */
 @Component
 @RequiredArgsConstructor
@@ -40,56 +58,368 @@ import java.util.concurrent.Executors;
 public class QueryNodeCollector extends AbstractNodeCollector {
 
     private int batchSize = 100;
-    private static final RequestFields REQUEST_FIELDS;
-    static {
-        REQUEST_FIELDS = new RequestFields();
-        REQUEST_FIELDS.addAll(List.of("isLink", "parentId", "isFile", "versionComment", "search", "createdByUser", "name", "allowableOperations", "aspectNames", "properties", "isLocked", "archivedAt", "isFolder", "content", "id", "nodeType", "path", "isFavorite", "modifiedByUser", "createdAt", "modifiedAt", "archivedByUser", "versionLabel"));
-    }
+    private boolean sortBySize = false;
+    private int readAhead = 1;
+    private RequestFields requestFields = new RequestFields();
+    private RequestInclude requestInclude = new RequestInclude();
+    private boolean withHints = false;
 
     private final SearchApi searchApi;
 
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    /**
+     * A range of creation dates, counting the matching nodes.
+     *
+     * @param from  lower bound, inclusive
+     * @param to    upper bound, exclusive unless {@code last}
+     * @param last  whether the range is the last one
+     * @param count number of matching nodes
+     */
+    private record Partition(Instant from, Instant to, boolean last, long count) {
+
+        String restrict(String query) {
+            return String.format("(%s) AND cm:created:[\"%s\" TO \"%s\"%s", query,
+                    DateTimeFormatter.ISO_INSTANT.format(from), DateTimeFormatter.ISO_INSTANT.format(to), last ? "]" : ">");
+        }
+
+    }
 
     @SneakyThrows
     private ResultSetPaging search(String query, int skipCount) {
+        return search(query, skipCount, batchSize, null, true);
+    }
+
+    @SneakyThrows
+    private ResultSetPaging search(String query, int skipCount, int maxItems, String sortField, boolean ascending) {
         val searchRequest = new SearchRequest();
         val requestQuery = new RequestQuery();
         requestQuery.setLanguage(RequestQuery.LanguageEnum.AFTS);
         requestQuery.setQuery(query);
         val paging = new RequestPagination();
-        paging.setMaxItems(batchSize);
+        paging.setMaxItems(maxItems);
         paging.setSkipCount(skipCount);
         searchRequest.setQuery(requestQuery);
         searchRequest.setPaging(paging);
-        searchRequest.setFields(REQUEST_FIELDS);
+        searchRequest.setFields(requestFields);
+        if (!requestInclude.isEmpty()) {
+            searchRequest.setInclude(requestInclude);
+        }
+        if (sortField != null) {
+            val sort = new RequestSortDefinition();
+            sort.add(new RequestSortDefinitionInner()
+                    .type(RequestSortDefinitionInner.TypeEnum.FIELD)
+                    .field(sortField)
+                    .ascending(ascending));
+            searchRequest.setSort(sort);
+        } else if (sortBySize) {
+            // largest content first
+            val sort = new RequestSortDefinition();
+            sort.add(new RequestSortDefinitionInner()
+                    .type(RequestSortDefinitionInner.TypeEnum.FIELD)
+                    .field("cm:content.size")
+                    .ascending(false));
+            searchRequest.setSort(sort);
+        }
         return searchApi.search(searchRequest).getBody();
     }
 
     @SneakyThrows
     private Void doQuery(String query) {
+        fetchPages(skipCount -> {
+            log.debug("skipCount --> {}", skipCount);
+            return search(query, skipCount);
+        }, resultSetPaging -> resultSetPaging.getList().getPagination().isHasMoreItems(), resultSetPaging -> {
+            for (val e : resultSetPaging.getList().getEntries()) {
+                enqueue(e.getEntry());
+            }
+        }, batchSize, readAhead);
+        return null;
+    }
+
+    /**
+     * Pages through the results by key.
+     * <p>
+     * The lower bound of each page is inclusive, so that results sharing the
+     * last value seen are not lost. The next page is requested with an offset
+     * past the results already read at its lower bound, which grows while the
+     * value stays the same, so that large groups of results sharing a value
+     * are read once; results already enqueued are skipped should the order
+     * within a group change.
+     * <p>
+     * Nodes without a value for a property used as keyset cannot be reached
+     * by range queries, hence they are left out of the keyset pages and
+     * collected afterwards by offset.
+     *
+     * @param query the FTS query
+     * @param field field the results are sorted and paged on
+     */
+    @SneakyThrows
+    private Void doKeysetQuery(String query, String field) {
+        if (!isBuiltInKeysetField(field)) {
+            pageByKey(String.format("(%s) AND ISNOTNULL:\"%s\"", query, field), field);
+            log.debug("Collecting nodes without {}", field);
+            return doQuery(String.format("(%s) AND NOT ISNOTNULL:\"%s\"", query, field));
+        }
+        return pageByKey(query, field);
+    }
+
+    /**
+     * Pages through the results by key, see {@link #doKeysetQuery(String, String)}.
+     *
+     * @param query the FTS query, matching only nodes having a value for the
+     *              keyset field
+     * @param field field the results are sorted and paged on
+     */
+    @SneakyThrows
+    private Void pageByKey(String query, String field) {
+        String lastValue = null;
+        String bound = null;
+        val seenAtLastValue = new HashSet<String>();
         var skipCount = 0;
         ResultSetPaging resultSetPaging;
         do {
-            log.debug("skipCount --> {}", skipCount);
-            resultSetPaging = search(query, skipCount);
+            val pageQuery = bound == null ? query : String.format("(%s) AND %s:[%s TO MAX]", query, field,
+                    bound.matches("-?\\d+") ? bound : String.format("\"%s\"", bound));
+            log.debug("keyset {} --> {}, skipCount --> {}", field, bound, skipCount);
+            resultSetPaging = search(pageQuery, skipCount, batchSize, field, true);
             for (val e : resultSetPaging.getList().getEntries()) {
-                queue.put(e.getEntry().getId());
+                val entry = e.getEntry();
+                val value = getKeysetValue(entry, field);
+                if (value == null) {
+                    log.warn("Keyset field {} not returned for node {}, skipping it", field, entry.getId());
+                    continue;
+                }
+                if (value.equals(lastValue) && seenAtLastValue.contains(entry.getId())) {
+                    continue;
+                }
+                enqueue(entry);
+                if (!value.equals(lastValue)) {
+                    lastValue = value;
+                    seenAtLastValue.clear();
+                }
+                seenAtLastValue.add(entry.getId());
+            }
+            if (Objects.equals(lastValue, bound)) {
+                skipCount += resultSetPaging.getList().getEntries().size();
+            } else {
+                bound = lastValue;
+                skipCount = seenAtLastValue.size();
             }
-            skipCount += batchSize;
         } while (resultSetPaging.getList().getPagination().isHasMoreItems());
         return null;
     }
 
+    /**
+     * Splits the query into disjoint ranges of creation dates holding about
+     * the same number of nodes and enumerates them concurrently.
+     * <p>
+     * Starting from the whole range between the oldest and the newest
+     * matching node, the range with the most nodes is repeatedly halved until
+     * the requested number of partitions is reached; counts come from the
+     * total reported by single-item searches.
+     *
+     * @param query       the FTS query
+     * @param partitions  number of partitions
+     * @param parallelism number of partitions enumerated at the same time
+     * @param keysetField keyset field if the partitions are paged by key,
+     *                    {@code null} to page them by offset
+     */
+    @SneakyThrows
+    private Void doPartitionedQuery(String query, int partitions, int parallelism, String keysetField) {
+        val oldest = search(query, 0, 1, "cm:created", true).getList();
+        if (oldest.getEntries().isEmpty()) {
+            return null;
+        }
+        val newest = search(query, 0, 1, "cm:created", false).getList();
+        val ranges = new ArrayList<Partition>();
+        ranges.add(new Partition(oldest.getEntries().get(0).getEntry().getCreatedAt().toInstant(),
+                newest.getEntries().get(0).getEntry().getCreatedAt().toInstant(),
+                true,
+                Objects.requireNonNullElse(oldest.getPagination().getTotalItems(), 0L)));
+        while (ranges.size() < partitions) {
+            val largest = ranges.stream().max(Comparator.comparingLong(Partition::count)).orElseThrow();
+            val millis = Duration.between(largest.from(), largest.to()).toMillis();
+            if (millis < 2 || largest.count() < 2) {
+                break;
+            }
+            val middle = largest.from().plusMillis(millis / 2);
+            val lower = new Partition(largest.from(), middle, false, 0);
+            val lowerCount = Objects.requireNonNullElse(search(lower.restrict(query), 0, 1, null, true).getList().getPagination().getTotalItems(), 0L);
+            ranges.remove(largest);
+            ranges.add(new Partition(largest.from(), middle, false, lowerCount));
+            ranges.add(new Partition(middle, largest.to(), largest.last(), largest.count() - lowerCount));
+        }
+        log.info("Query split into {} partitions: {}", ranges.size(), ranges.stream().map(Partition::count).toList());
+        val partitionsExecutor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            val futures = ranges.stream()
+                    .filter(r -> r.count() > 0)
+                    .map(r -> CompletableFuture.runAsync(() -> {
+                        if (keysetField != null) {
+                            doKeysetQuery(r.restrict(query), keysetField);
+                        } else {
+                            doQuery(r.restrict(query));
+                        }
+                    }, partitionsExecutor))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(futures).join();
+        } finally {
+            partitionsExecutor.shutdown();
+        }
+        return null;
+    }
+
+    /**
+     * Enqueues a search result, along with its path when the processor can
+     * make use of it, in the lane matching its content size.
+     *
+     * @param entry search result
+     * @throws InterruptedException if interrupted while waiting for space in
+     *                              the queue
+     */
+    private void enqueue(ResultNode entry) throws InterruptedException {
+        val size = entry.getContent() != null ? entry.getContent().getSizeInBytes() : null;
+        if (withHints && entry.getPath() != null) {
+            enqueue(entry.getId(), entry.getParentId(), entry.getPath().getName(), size);
+        } else {
+            enqueue(entry.getId(), null, null, size);
+        }
+    }
+
+    /**
+     * Computes the fields requested from the search API: the id, the fields
+     * needed for paging and partitioning, the content when nodes are split
+     * by size, and those required by the processor.
+     *
+     * @param config      collector configuration
+     * @param keysetField keyset field, or {@code null}
+     * @param partitioned whether the query is partitioned
+     */
+    private void setRequestFields(CollectorConfig config, String keysetField, boolean partitioned) {
+        val fields = new LinkedHashSet<String>();
+        val include = new LinkedHashSet<String>();
+        fields.add("id");
+        if (partitioned || "cm:created".equals(keysetField)) {
+            fields.add("createdAt");
+        }
+        if ("cm:modified".equals(keysetField)) {
+            fields.add("modifiedAt");
+        }
+        if (keysetField != null && !isBuiltInKeysetField(keysetField)) {
+            fields.add("properties");
+            include.add("properties");
+        }
+        if (sizeLaneService.isEnabled()) {
+            fields.add("content");
+        }
+        withHints = config.getRequiredFields().contains("path");
+        if (withHints) {
+            fields.add("path");
+            fields.add("parentId");
+            include.add("path");
+        }
+        fields.addAll(config.getRequiredFields());
+        requestFields = new RequestFields();
+        requestFields.addAll(fields);
+        requestInclude = new RequestInclude();
+        requestInclude.addAll(include);
+        log.debug("search fields --> {}, include --> {}", requestFields, requestInclude);
+    }
+
+    /**
+     * @param field keyset field
+     * @return whether the field is returned as a node field rather than as a
+     * property
+     */
+    private static boolean isBuiltInKeysetField(String field) {
+        return "cm:created".equals(field) || "cm:modified".equals(field);
+    }
+
+    /**
+     * Extracts the value of the keyset field from a result.
+     *
+     * @param entry search result
+     * @param field keyset field
+     * @return the value in a format suitable for a range query, or
+     * {@code null} if the result has none
+     */
+    private static String getKeysetValue(ResultNode entry, String field) {
+        return switch (field) {
+            case "cm:created" -> DateTimeFormatter.ISO_INSTANT.format(entry.getCreatedAt());
+            case "cm:modified" -> DateTimeFormatter.ISO_INSTANT.format(entry.getModifiedAt());
+            default -> {
+                val value = entry.getProperties() != null ? CastUtils.castToMapOfStringSerializable(entry.getProperties()).get(field) : null;
+                yield value != null ? value.toString() : null;
+            }
+        };
+    }
+
+    /**
+     * Checks that the keyset field is either {@code cm:created},
+     * {@code cm:modified} or a property returned by the REST API along with
+     * the results, which excludes the {@code sys} properties such as
+     * {@code sys:node-dbid}.
+     *
+     * @param field keyset field
+     * @throws IllegalArgumentException if the field cannot be used
+     */
+    private static void validateKeysetField(String field) {
+        if (isBuiltInKeysetField(field)) {
+            return;
+        }
+        if (!field.matches("[\\w-]+:[\\w-]+")) {
+            throw new IllegalArgumentException(String.format("Invalid keyset field %s, expected prefix:localName", field));
+        }
+        if (field.startsWith("sys:")) {
+            throw new IllegalArgumentException(String.format("Keyset field %s is not returned with the node properties, use cm:created or cm:modified", field));
+        }
+    }
+
     /**
      * Executes the configured Alfresco FTS query and enqueues each returned
      * node identifier.
+     * <p>
+     * When {@code partitions} is greater than one, the query is split into as
+     * many ranges of creation dates, enumerated {@code partition-parallelism}
+     * at a time (by default all of them).
+     * <p>
+     * When {@code sort-by-size} is {@code true}, results are enqueued largest
+     * content first, so that long transfers start early instead of trailing
+     * at the end of the run. The order only holds within each partition and
+     * is not applied with keyset paging.
+     * <p>
+     * Pages are fetched {@code read-ahead} at a time in advance (default 1)
+     * when paging by offset. The method returns once every result has been
+     * enqueued.
      *
      * @param config collector configuration
      */
     @Override
     public void collectNodes(CollectorConfig config) {
         if (config.getArg("batch-size") != null) this.batchSize = (int) config.getArg("batch-size");
-        executor.submit(() -> doQuery((String) config.getArg("query")));
+        if (config.getArg("sort-by-size") != null) this.sortBySize = (boolean) config.getArg("sort-by-size");
+        if (config.getArg("read-ahead") != null) this.readAhead = (int) config.getArg("read-ahead");
+        val keysetField = "keyset".equals(config.getArg("paging"))
+                ? config.getArg("keyset-field") != null ? (String) config.getArg("keyset-field") : "cm:created"
+                : null;
+        if (keysetField != null) {
+            validateKeysetField(keysetField);
+        }
+        if (keysetField != null && sortBySize) {
+            log.warn("sort-by-size is ignored with keyset paging");
+        }
+        val partitions = config.getArg("partitions") != null ? (int) config.getArg("partitions") : 1;
+        if (keysetField == null && sortBySize && partitions > 1) {
+            log.warn("sort-by-size only orders the results within each partition");
+        }
+        setRequestFields(config, keysetField, partitions > 1);
+        if (partitions > 1) {
+            val parallelism = config.getArg("partition-parallelism") != null ? (int) config.getArg("partition-parallelism") : partitions;
+            doPartitionedQuery((String) config.getArg("query"), partitions, parallelism, keysetField);
+        } else if (keysetField != null) {
+            doKeysetQuery((String) config.getArg("query"), keysetField);
+        } else {
+            doQuery((String) config.getArg("query"));
+        }
     }
 
 }
@@ -22,7 +22,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.alfresco.core.handler.TrashcanApi;
-import org.alfresco.core.model.DeletedNodesPaging;
 import org.saidone.model.config.CollectorConfig;
 import org.springframework.stereotype.Component;
 
@@ -38,33 +37,35 @@ import java.util.Objects;
 public class TrashcanNodeCollector extends AbstractNodeCollector {
 
     private int batchSize = 100;
+    private int readAhead = 1;
 
     private final TrashcanApi trashcanApi;
 
     /**
      * Lists deleted nodes from Alfresco trashcan in batches and enqueues each
-     * returned node identifier.
+     * returned node identifier, fetching {@code read-ahead} batches in advance
+     * (default 1).
      *
      * @param config collector configuration
      */
     @Override
     public void collectNodes(CollectorConfig config) {
         if (config.getArg("batch-size") != null) this.batchSize = (int) config.getArg("batch-size");
-        var skipCount = 0;
-        DeletedNodesPaging deletedNodesPaging;
-        do {
-            log.debug("skipCount --> {}", skipCount);
-            deletedNodesPaging = trashcanApi.listDeletedNodes(skipCount, batchSize, List.of("id")).getBody();
-            for (val entry : Objects.requireNonNull(deletedNodesPaging).getList().getEntries()) {
-                try {
+        if (config.getArg("read-ahead") != null) this.readAhead = (int) config.getArg("read-ahead");
+        try {
+            fetchPages(skipCount -> {
+                log.debug("skipCount --> {}", skipCount);
+                return trashcanApi.listDeletedNodes(skipCount, batchSize, List.of("id")).getBody();
+            }, deletedNodesPaging -> !Objects.requireNonNull(deletedNodesPaging).getList().getEntries().isEmpty(), deletedNodesPaging -> {
+                for (val entry : deletedNodesPaging.getList().getEntries()) {
                     queue.put(entry.getEntry().getId());
-                } catch (InterruptedException e) {
-                    log.trace(e.getMessage(), e);
-                    log.warn(e.getMessage());
                 }
-            }
-            skipCount += batchSize;
-        } while (!deletedNodesPaging.getList().getEntries().isEmpty());
+            }, batchSize, readAhead);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.trace(e.getMessage(), e);
+            log.warn(e.getMessage());
+        }
     }
 
 }
@@ -0,0 +1,92 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Destination of the files produced by an export.
+ * <p>
+ * Paths passed to a sink are relative to the root of the export. A sink
+ * instance is meant to be used by a single consumer thread at a time, unless
+ * it reports to be thread-safe with {@link #isThreadSafe()}, in which case
+ * helper threads working on behalf of the consumer may share it.
+ */
+public interface ExportSink extends Closeable {
+
+    /**
+     * Creates a directory, including any missing parent.
+     *
+     * @param directory relative directory path
+     * @throws IOException if the directory cannot be created
+     */
+    void createDirectories(Path directory) throws IOException;
+
+    /**
+     * Writes a metadata file in the XML format of {@link Properties}.
+     *
+     * @param file       relative file path
+     * @param properties metadata to write
+     * @throws IOException if the file cannot be written
+     */
+    void writeMetadata(Path file, Properties properties) throws IOException;
+
+    /**
+     * Downloads the content of a node, or of one of its versions, to a file.
+     * Empty content does not produce any file.
+     *
+     * @param file      relative file path
+     * @param nodeId    id of the node
+     * @param versionId id of the version, or {@code null} for the current content
+     * @return number of bytes written
+     * @throws IOException if the content cannot be retrieved or written
+     */
+    long writeContent(Path file, String nodeId, String versionId) throws IOException;
+
+    /**
+     * Downloads the content of a node, or of one of its versions, to a file
+     * when its size is already known. Sinks that can take advantage of the
+     * size, e.g. to fetch large content in ranges, override this method.
+     *
+     * @param file      relative file path
+     * @param nodeId    id of the node
+     * @param versionId id of the version, or {@code null} for the current content
+     * @param size      size of the content in bytes, or {@code null} if unknown
+     * @return number of bytes written
+     * @throws IOException if the content cannot be retrieved or written
+     */
+    default long writeContent(Path file, String nodeId, String versionId, Long size) throws IOException {
+        return writeContent(file, nodeId, versionId);
+    }
+
+    /**
+     * Tells whether the sink can be used by several threads at the same
+     * time, e.g. to download the versions of a node concurrently.
+     *
+     * @return {@code true} if the methods of the sink can be called
+     * concurrently, {@code false} by default
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.export;
+
+import lombok.AllArgsConstructor;
+import lombok.val;
+import org.saidone.misc.DiskWriter;
+import org.saidone.service.ContentService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes every exported item as a separate file under an output directory.
+ * <p>
+ * Content whose size reaches the range threshold is downloaded in parallel
+ * chunks, see {@link ContentService#download(String, String, Path, long, long, int)}.
+ * Other content is written by the {@link DiskWriter}, if any, so that the
+ * calling thread is free to keep fetching from the network. Metadata files
+ * go through the same writer and in-flight budget: they are serialized by the
+ * calling thread and written in the background, failures being reported by
+ * the next metadata write or by {@link #close()}. Directories are still
+ * created by the calling thread, as content files are opened right after.
+ * Every item goes to its own file, hence the sink is thread-safe.
+ */
+@AllArgsConstructor
+public class FileSystemExportSink implements ExportSink {
+
+    private static final int MAX_CACHED_DIRECTORIES = 100_000;
+
+    private final Path outputDir;
+    private final ContentService contentService;
+    private final long rangeThreshold;
+    private final long rangeChunkSize;
+    private final int rangeParallelism;
+    private final DiskWriter diskWriter;
+
+    /**
+     * Directories already created, cleared when it grows too large.
+     */
+    private final Set<Path> createdDirectories = new HashSet<>();
+
+    /**
+     * Metadata files handed over to the disk writer and not yet checked.
+     */
+    private final Queue<CompletableFuture<Void>> pendingMetadata = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a sink that always downloads content with a single request.
+     *
+     * @param outputDir      output directory
+     * @param contentService service used to download content
+     */
+    public FileSystemExportSink(Path outputDir, ContentService contentService) {
+        this(outputDir, contentService, Long.MAX_VALUE, Long.MAX_VALUE, 1, null);
+    }
+
+    /**
+     * Resolves a relative export path against the output directory.
+     *
+     * @param path relative path
+     * @return the corresponding local path
+     */
+    public Path resolve(Path path) {
+        return outputDir.resolve(path);
+    }
+
+    @Override
+    public synchronized void createDirectories(Path directory) throws IOException {
+        if (createdDirectories.contains(directory)) {
+            return;
+        }
+        Files.createDirectories(resolve(directory));
+        if (createdDirectories.size() >= MAX_CACHED_DIRECTORIES) {
+            createdDirectories.clear();
+        }
+        createdDirectories.add(directory);
+    }
+
+    @Override
+    public void writeMetadata(Path file, Properties properties) throws IOException {
+        if (diskWriter == null) {
+            try (val out = Files.newOutputStream(resolve(file))) {
+                properties.storeToXML(out, null);
+            }
+            return;
+        }
+        // surface failures of earlier metadata writes
+        for (var write = pendingMetadata.peek(); write != null && write.isDone(); write = pendingMetadata.peek()) {
+            if (pendingMetadata.remove(write)) {
+                join(write);
+            }
+        }
+        val out = new ByteArrayOutputStream();
+        properties.storeToXML(out, null);
+        try {
+            pendingMetadata.add(diskWriter.write(resolve(file), out.toByteArray()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted while writing %s", file));
+        }
+    }
+
+    @Override
+    public long writeContent(Path file, String nodeId, String versionId) throws IOException {
+        if (diskWriter != null) {
+            return contentService.download(nodeId, versionId, resolve(file), diskWriter);
+        }
+        return contentService.download(nodeId, versionId, resolve(file));
+    }
+
+    @Override
+    public long writeContent(Path file, String nodeId, String versionId, Long size) throws IOException {
+        if (size != null && size > 0 && size >= rangeThreshold) {
+            return contentService.download(nodeId, versionId, resolve(file), size, rangeChunkSize, rangeParallelism);
+        }
+        return writeContent(file, nodeId, versionId);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Waits for the pending metadata writes.
+     *
+     * @throws IOException if any of them failed
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (var write = pendingMetadata.poll(); write != null; write = pendingMetadata.poll()) {
+            try {
+                join(write);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Waits for a metadata write, unwrapping its failure.
+     *
+     * @param write the write
+     * @throws IOException if the write failed
+     */
+    private static void join(CompletableFuture<Void> write) throws IOException {
+        try {
+            write.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof UncheckedIOException u ? u.getCause() : new IOException(e.getCause());
+        }
+    }
+
+}
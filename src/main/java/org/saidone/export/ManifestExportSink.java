@@ -0,0 +1,134 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.export;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Collects the metadata of every exported item into a single manifest file
+ * instead of writing one metadata file per item.
+ * <p>
+ * Content and directories are passed on to the wrapped sink. Each record
+ * carries the relative path the metadata file would have had. In
+ * {@link #FORMAT_JSONL} format every record is a JSON object with a
+ * {@code path} and a {@code properties} member, in {@link #FORMAT_CSV}
+ * format every property is a {@code path,property,value} row. Records are
+ * appended under a lock, so the sink is thread-safe whenever the wrapped one
+ * is.
+ */
+@Slf4j
+public class ManifestExportSink implements ExportSink {
+
+    public static final String FORMAT_JSONL = "jsonl";
+    public static final String FORMAT_CSV = "csv";
+
+    private final ExportSink delegate;
+    private final Path manifestFile;
+    private final String format;
+
+    private RecordWriter writer;
+
+    /**
+     * Creates a new sink, the manifest is created on first write.
+     *
+     * @param delegate     sink receiving content and directories
+     * @param manifestFile manifest file
+     * @param format       either {@link #FORMAT_JSONL} or {@link #FORMAT_CSV}
+     */
+    public ManifestExportSink(ExportSink delegate, Path manifestFile, String format) {
+        if (!FORMAT_JSONL.equals(format) && !FORMAT_CSV.equals(format)) {
+            throw new IllegalArgumentException(String.format("Unsupported metadata format: %s", format));
+        }
+        this.delegate = delegate;
+        this.manifestFile = manifestFile;
+        this.format = format;
+    }
+
+    @Override
+    public void createDirectories(Path directory) throws IOException {
+        delegate.createDirectories(directory);
+    }
+
+    @Override
+    public synchronized void writeMetadata(Path file, Properties properties) throws IOException {
+        if (writer == null) {
+            writer = new RecordWriter(manifestFile);
+            if (FORMAT_CSV.equals(format)) {
+                writer.writeCsv(List.of("path", "property", "value"));
+            }
+            log.debug("Opened manifest {}", manifestFile);
+        }
+        val path = StreamSupport.stream(file.spliterator(), false)
+                .map(Path::toString)
+                .collect(Collectors.joining("/"));
+        val sorted = new TreeMap<String, String>();
+        properties.stringPropertyNames().forEach(name -> sorted.put(name, properties.getProperty(name)));
+        if (FORMAT_JSONL.equals(format)) {
+            val record = new LinkedHashMap<String, Object>();
+            record.put("path", path);
+            record.put("properties", sorted);
+            writer.writeJson(record);
+        } else {
+            for (val entry : sorted.entrySet()) {
+                writer.writeCsv(List.of(path, entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    @Override
+    public long writeContent(Path file, String nodeId, String versionId) throws IOException {
+        return delegate.writeContent(file, nodeId, versionId);
+    }
+
+    @Override
+    public long writeContent(Path file, String nodeId, String versionId, Long size) throws IOException {
+        return delegate.writeContent(file, nodeId, versionId, size);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return delegate.isThreadSafe();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            synchronized (this) {
+                if (writer != null) {
+                    writer.close();
+                    log.info("Closed manifest {}", manifestFile);
+                    writer = null;
+                }
+            }
+        } finally {
+            delegate.close();
+        }
+    }
+
+}
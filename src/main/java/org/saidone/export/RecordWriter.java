@@ -0,0 +1,108 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * Appends records to a text file, either as JSON lines or as CSV rows.
+ * <p>
+ * Output goes through a large buffer, so that millions of small records
+ * result in a limited number of sequential writes. The file is created on
+ * construction and instances are not thread safe.
+ */
+public class RecordWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final BufferedWriter writer;
+
+    /**
+     * Creates the file, replacing any existing one.
+     *
+     * @param file destination file
+     * @throws IOException if the file cannot be created
+     */
+    public RecordWriter(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Writes an object serialized as a single JSON line.
+     *
+     * @param record the record
+     * @throws IOException if the file cannot be written
+     */
+    public void writeJson(Object record) throws IOException {
+        writer.write(OBJECT_MAPPER.writeValueAsString(record));
+        writer.newLine();
+    }
+
+    /**
+     * Writes a CSV row, quoting the values that need it. {@code null} values
+     * are written as empty fields.
+     *
+     * @param values values of the row
+     * @throws IOException if the file cannot be written
+     */
+    public void writeCsv(Collection<?> values) throws IOException {
+        var first = true;
+        for (val value : values) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            if (value != null) {
+                writer.write(escapeCsv(value.toString()));
+            }
+        }
+        writer.newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Quotes a CSV value containing separators, quotes or line breaks.
+     *
+     * @param value the value
+     * @return the escaped value
+     */
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return String.format("\"%s\"", value.replace("\"", "\"\""));
+    }
+
+}
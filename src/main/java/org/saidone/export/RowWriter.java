@@ -0,0 +1,41 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes rows of typed values to a columnar file.
+ * <p>
+ * Implementations are provided by optional build profiles and are not thread
+ * safe.
+ */
+public interface RowWriter extends Closeable {
+
+    /**
+     * Writes a row. {@code null} values are written as missing.
+     *
+     * @param values values of the row, in the order of the columns
+     * @throws IOException if the file cannot be written
+     */
+    void writeRow(List<?> values) throws IOException;
+
+}
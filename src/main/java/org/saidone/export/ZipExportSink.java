@@ -0,0 +1,218 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.export;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.saidone.service.ContentService;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams exported items into rolling ZIP archives.
+ * <p>
+ * Archives are named {@code <prefix>-<n>.zip} and a new one is started as soon
+ * as the current one exceeds the configured size, so that a huge export ends
+ * up in a limited number of large files written sequentially. Content is
+ * staged to a temporary file before being added, so that a failed download
+ * never leaves a truncated entry behind; an archive whose write fails is
+ * renamed with a {@code .failed} suffix. Each consumer thread owns its own
+ * sink and entries are written one at a time, hence the sink is not
+ * thread-safe and no locking is involved.
+ */
+@Slf4j
+public class ZipExportSink implements ExportSink {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Path outputDir;
+    private final String prefix;
+    private final long maxArchiveSize;
+    private final int compressionLevel;
+    private final ContentService contentService;
+
+    private int archiveNumber = 0;
+    private CountingOutputStream archiveOut;
+    private ZipOutputStream zipOut;
+
+    /**
+     * Creates a new sink, archives are opened lazily on first write.
+     *
+     * @param outputDir        directory where the archives are created
+     * @param prefix           archive name prefix
+     * @param maxArchiveSize   size in bytes after which a new archive is started
+     * @param compressionLevel deflate level, from 0 (no compression) to 9
+     * @param contentService   service used to stream node content
+     */
+    public ZipExportSink(Path outputDir, String prefix, long maxArchiveSize, int compressionLevel, ContentService contentService) {
+        this.outputDir = outputDir;
+        this.prefix = prefix;
+        this.maxArchiveSize = maxArchiveSize;
+        this.compressionLevel = compressionLevel;
+        this.contentService = contentService;
+    }
+
+    @Override
+    public void createDirectories(Path directory) throws IOException {
+        // directories are implied by entry names
+    }
+
+    @Override
+    public void writeMetadata(Path file, Properties properties) throws IOException {
+        putNextEntry(file);
+        try {
+            // storeToXML leaves the stream open
+            properties.storeToXML(zipOut, null);
+        } catch (IOException e) {
+            abort(e);
+            throw e;
+        }
+        closeEntry();
+    }
+
+    @Override
+    public long writeContent(Path file, String nodeId, String versionId) throws IOException {
+        // stage the content first, so that a failed download never leaves a truncated entry
+        Files.createDirectories(outputDir);
+        val stagingFile = Files.createTempFile(outputDir, String.format("%s-", prefix), ".staging");
+        try {
+            val size = contentService.download(nodeId, versionId, stagingFile);
+            if (size == 0) {
+                return 0;
+            }
+            putNextEntry(file);
+            try {
+                Files.copy(stagingFile, zipOut);
+            } catch (IOException e) {
+                abort(e);
+                throw e;
+            }
+            closeEntry();
+            return size;
+        } finally {
+            Files.deleteIfExists(stagingFile);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (zipOut != null) {
+            zipOut.close();
+            log.info("Closed archive {}", archivePath());
+            zipOut = null;
+        }
+    }
+
+    /**
+     * Starts a new entry, opening a new archive if none is open.
+     *
+     * @param file relative path of the entry
+     * @throws IOException if the archive cannot be written
+     */
+    private void putNextEntry(Path file) throws IOException {
+        if (zipOut == null) {
+            archiveNumber++;
+            Files.createDirectories(outputDir);
+            archiveOut = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(archivePath()), BUFFER_SIZE));
+            zipOut = new ZipOutputStream(archiveOut);
+            zipOut.setLevel(compressionLevel);
+            log.debug("Opened archive {}", archivePath());
+        }
+        zipOut.putNextEntry(new ZipEntry(StreamSupport.stream(file.spliterator(), false)
+                .map(Path::toString)
+                .collect(Collectors.joining("/"))));
+    }
+
+    /**
+     * Closes the current entry and rolls over to a new archive once the size
+     * limit has been reached.
+     *
+     * @throws IOException if the archive cannot be written
+     */
+    private void closeEntry() throws IOException {
+        zipOut.closeEntry();
+        if (archiveOut.count >= maxArchiveSize) {
+            close();
+        }
+    }
+
+    /**
+     * Discards the current archive after a failed write, renaming it so that
+     * it cannot be mistaken for a complete one. The next write starts a new
+     * archive.
+     *
+     * @param cause error that interrupted the write
+     */
+    private void abort(IOException cause) {
+        val archive = archivePath();
+        log.error("Failed writing to archive {}: {}", archive, cause.getMessage());
+        try {
+            archiveOut.close();
+            Files.move(archive, archive.resolveSibling(String.format("%s.failed", archive.getFileName())), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Cannot discard archive {}: {}", archive, e.getMessage());
+        }
+        zipOut = null;
+        archiveOut = null;
+    }
+
+    /**
+     * @return the path of the current archive
+     */
+    private Path archivePath() {
+        return outputDir.resolve(String.format("%s-%05d.zip", prefix, archiveNumber));
+    }
+
+    /**
+     * Output stream keeping track of the number of bytes written.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+    }
+
+}
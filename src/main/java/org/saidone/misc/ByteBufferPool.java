@@ -0,0 +1,82 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.misc;
+
+import lombok.Getter;
+import lombok.val;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounded pool of reusable direct {@link ByteBuffer}s.
+ * <p>
+ * Buffers are allocated lazily and recycled on release. The total number of
+ * buffers handed out at any time is capped, so that the memory held by the
+ * pool never exceeds the configured budget and callers block on
+ * {@link #acquire()} once it is exhausted.
+ */
+public class ByteBufferPool {
+
+    @Getter
+    private final int bufferSize;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a new pool.
+     *
+     * @param bufferSize size of each buffer in bytes, must be positive
+     * @param maxBytes   maximum number of bytes held by the buffers in use,
+     *                   at least one buffer is always available
+     */
+    public ByteBufferPool(int bufferSize, long maxBytes) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid buffer size: %d", bufferSize));
+        }
+        this.bufferSize = bufferSize;
+        this.permits = new Semaphore((int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / bufferSize)));
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, waiting until one is released if
+     * the budget is exhausted.
+     *
+     * @return the buffer
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ByteBuffer acquire() throws InterruptedException {
+        permits.acquire();
+        val buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     *
+     * @param buffer buffer obtained from {@link #acquire()}
+     */
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+        permits.release();
+    }
+
+}
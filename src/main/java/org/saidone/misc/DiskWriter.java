@@ -0,0 +1,164 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.misc;
+
+import lombok.val;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of threads performing local disk writes on behalf of the threads
+ * fetching content from Alfresco.
+ * <p>
+ * Data travels between the two sides in buffers taken from a shared
+ * {@link ByteBufferPool}: a fetching thread fills a buffer and submits it,
+ * the buffer goes back to the pool once written. The size of the pool caps
+ * the bytes in flight, so that fetching blocks when the disk falls behind.
+ * Buffers are written at an explicit position, hence writes to the same file
+ * can complete in any order.
+ */
+public class DiskWriter {
+
+    private final ByteBufferPool bufferPool;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param threads          number of writing threads
+     * @param bufferSize       size of each buffer in bytes
+     * @param maxInFlightBytes maximum number of bytes fetched and not yet written
+     */
+    public DiskWriter(int threads, int bufferSize, long maxInFlightBytes) {
+        this.bufferPool = new ByteBufferPool(bufferSize, maxInFlightBytes);
+        val counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            val thread = new Thread(r, String.format("disk-writer-%d", counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Takes an empty buffer, waiting if the in-flight budget is exhausted.
+     *
+     * @return the buffer
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ByteBuffer acquire() throws InterruptedException {
+        return bufferPool.acquire();
+    }
+
+    /**
+     * Returns a buffer that is not going to be submitted.
+     *
+     * @param buffer the buffer
+     */
+    public void release(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+
+    /**
+     * Writes a flipped buffer at the given position of a file and releases
+     * it afterwards, whatever the outcome.
+     *
+     * @param channel  destination file channel
+     * @param buffer   buffer ready to be read
+     * @param position position in the file
+     * @return future completed when the buffer has been written
+     */
+    public CompletableFuture<Void> write(FileChannel channel, ByteBuffer buffer, long position) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                var offset = position;
+                while (buffer.hasRemaining()) {
+                    offset += channel.write(buffer, offset);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                bufferPool.release(buffer);
+            }
+        }, executor);
+    }
+
+    /**
+     * Writes a whole file from memory, replacing any existing one. The data
+     * is copied into buffers of the pool, so it counts against the in-flight
+     * budget like fetched content; the file is closed once every buffer has
+     * been written.
+     *
+     * @param file destination file
+     * @param data content of the file
+     * @return future completed when the file has been written and closed
+     * @throws IOException          if the file cannot be opened
+     * @throws InterruptedException if interrupted while waiting for a buffer
+     */
+    public CompletableFuture<Void> write(Path file, byte[] data) throws IOException, InterruptedException {
+        val channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        val writes = new ArrayList<CompletableFuture<Void>>();
+        try {
+            var position = 0;
+            while (position < data.length) {
+                val buffer = acquire();
+                val length = Math.min(buffer.remaining(), data.length - position);
+                buffer.put(data, position, length).flip();
+                writes.add(write(channel, buffer, position));
+                position += length;
+            }
+        } catch (InterruptedException e) {
+            // never close the channel while writes are still pending
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).whenComplete((result, error) -> closeQuietly(channel));
+            throw e;
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).whenComplete((result, error) -> {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Closes a channel, ignoring failures.
+     *
+     * @param channel the channel
+     */
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // the write has already failed
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.misc;
+
+import lombok.val;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of locks selected by key hash.
+ * <p>
+ * Work sharing the same key is serialized while work on different keys
+ * proceeds in parallel, unless two keys happen to fall on the same stripe.
+ * Memory usage is bounded by the number of stripes regardless of the number
+ * of distinct keys.
+ */
+public class StripedLock {
+
+    private final ReentrantLock[] locks;
+
+    /**
+     * Creates a new striped lock.
+     *
+     * @param stripes number of stripes, must be positive
+     */
+    public StripedLock(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid number of stripes: %d", stripes));
+        }
+        locks = new ReentrantLock[stripes];
+        for (var i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Returns the number of stripes, i.e. the maximum number of keys that
+     * can be locked at the same time.
+     *
+     * @return the number of stripes
+     */
+    public int size() {
+        return locks.length;
+    }
+
+    /**
+     * Runs the given task while holding the stripe assigned to the key.
+     *
+     * @param key  lock key
+     * @param task task to execute
+     * @param <T>  task result type
+     * @return the task result
+     */
+    public <T> T withLock(Object key, Supplier<T> task) {
+        val lock = locks[Math.floorMod(key.hashCode(), locks.length)];
+        lock.lock();
+        try {
+            return task.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -18,6 +18,8 @@
 
 package org.saidone.model.alfresco;
 
+import java.util.Map;
+
 /**
  * Constants for the Alfresco public content model.
  */
@@ -34,6 +36,22 @@ public interface ContentModel {
     String AUDIO_PREFIX = "audio";
     String WEBDAV_URI = "http://www.alfresco.org/model/webdav/1.0";
     String WEBDAV_PREFIX = "webdav";
+    String ST_URI = "http://www.alfresco.org/model/site/1.0";
+    String ST_PREFIX = "st";
+    String SYS_URI = "http://www.alfresco.org/model/system/1.0";
+    String SYS_PREFIX = "sys";
+    String APP_URI = "http://www.alfresco.org/model/application/1.0";
+    String APP_PREFIX = "app";
+    Map<String, String> NAMESPACES = Map.of(
+            CM_PREFIX, CM_URI,
+            RN_PREFIX, RN_URI,
+            EXIF_PREFIX, EXIF_URI,
+            AUDIO_PREFIX, AUDIO_URI,
+            WEBDAV_PREFIX, WEBDAV_URI,
+            ST_PREFIX, ST_URI,
+            SYS_PREFIX, SYS_URI,
+            APP_PREFIX, APP_URI
+    );
     String TYPE_CMOBJECT_LOCALNAME = "cmobject";
     String TYPE_CMOBJECT = String.format("%s:%s", CM_PREFIX, TYPE_CMOBJECT_LOCALNAME);
     String TYPE_FOLDER_LOCALNAME = "folder";
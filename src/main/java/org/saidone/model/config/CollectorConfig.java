@@ -18,10 +18,13 @@
 
 package org.saidone.model.config;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Configuration for a node collector.
@@ -32,6 +35,13 @@ public class CollectorConfig {
     private String name;
     private Map<String, Object> args = new HashMap<>();
 
+    /**
+     * Node fields required by the processor, see
+     * {@link org.saidone.processors.NodeProcessor#getRequiredFields}.
+     */
+    @JsonIgnore
+    private Set<String> requiredFields = new HashSet<>();
+
     public void addArg(String key, Object value) {
         this.args.put(key, value);
     }
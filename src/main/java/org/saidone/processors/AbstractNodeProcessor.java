@@ -20,13 +20,20 @@ package org.saidone.processors;
 
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import lombok.val;
 import org.alfresco.core.handler.NodesApi;
 import org.alfresco.core.model.Node;
+import org.alfresco.core.model.PathInfo;
 import org.saidone.component.BaseComponent;
 import org.saidone.model.config.ProcessorConfig;
+import org.saidone.service.DbNodeReaderService;
+import org.saidone.service.NodeHintService;
+import org.saidone.service.SizeLaneService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
@@ -55,6 +62,15 @@ public abstract class AbstractNodeProcessor extends BaseComponent implements Nod
     @Autowired
     protected NodesApi nodesApi;
 
+    @Autowired
+    private NodeHintService nodeHintService;
+
+    @Autowired
+    private DbNodeReaderService dbNodeReaderService;
+
+    @Autowired
+    private SizeLaneService sizeLaneService;
+
     @Value("${application.consumer-threads}")
     private int consumerThreads;
 
@@ -71,39 +87,55 @@ public abstract class AbstractNodeProcessor extends BaseComponent implements Nod
      * Starts asynchronous consumption of node identifiers from the queue.
      * <p>
      * Processing stops when polling times out and no further node id is
-     * available. Each successfully processed node increments the shared
+     * available, then {@link #afterProcess(ProcessorConfig)} is invoked on the
+     * same thread. Each successfully processed node increments the shared
      * counter and optionally waits according to the configured rate limit.
+     * Consumers of the large file lane take the nodes of that lane first,
+     * see {@link SizeLaneService}.
      *
-     * @param config processor-specific configuration used by
-     *               {@link #processNode(String, ProcessorConfig)}
+     * @param config     processor-specific configuration used by
+     *                   {@link #processNode(String, ProcessorConfig)}
+     * @param largeFiles whether the consumer serves the large file lane
      * @return future representing the asynchronous processing task
      * @throws RuntimeException if the processing thread is interrupted while
      *                          waiting for the next node id
      */
     @SneakyThrows
-    public CompletableFuture<Void> process(ProcessorConfig config) {
+    public CompletableFuture<Void> process(ProcessorConfig config, boolean largeFiles) {
         return CompletableFuture.runAsync(() -> {
-            while (true) {
-                String nodeId;
-                try {
-                    nodeId = queue.poll(consumerTimeout, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException e) {
-                    log.trace(e.getMessage(), e);
-                    log.error(e.getMessage());
-                    throw new RuntimeException(e);
-                }
-                if (nodeId == null) break;
-                else {
-                    // do things with the node
+            try {
+                while (true) {
+                    String nodeId;
                     try {
-                        processNode(nodeId, config);
-                        processedNodesCounter.incrementAndGet();
-                        sleep();
-                    } catch (Exception e) {
+                        nodeId = largeFiles ? sizeLaneService.poll(consumerTimeout) : queue.poll(consumerTimeout, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
                         log.trace(e.getMessage(), e);
                         log.error(e.getMessage());
+                        throw new RuntimeException(e);
+                    }
+                    if (nodeId == null) break;
+                    else {
+                        // do things with the node
+                        try {
+                            processNode(nodeId, config);
+                            processedNodesCounter.incrementAndGet();
+                            sleep();
+                        } catch (Exception e) {
+                            log.trace(e.getMessage(), e);
+                            log.error(e.getMessage());
+                        } finally {
+                            nodeHintService.remove(nodeId);
+                            dbNodeReaderService.evict(nodeId);
+                        }
                     }
                 }
+            } finally {
+                try {
+                    afterProcess(config);
+                } catch (Exception e) {
+                    log.trace(e.getMessage(), e);
+                    log.error(e.getMessage());
+                }
             }
         });
     }
@@ -127,15 +159,16 @@ public abstract class AbstractNodeProcessor extends BaseComponent implements Nod
      * @return the fetched node entry
      */
     protected Node getNode(String nodeId, boolean includeProperties) {
-        return Objects.requireNonNull(nodesApi.getNode(
-                nodeId,
-                includeProperties ? List.of("properties") : null,
-                null,
-                null).getBody()).getEntry();
+        return getNode(nodeId, includeProperties ? List.of("properties") : null);
     }
 
     /**
      * Loads a node by id with the provided include parameters.
+     * <p>
+     * When the database node reader is enabled (see
+     * {@link DbNodeReaderService}) and provides everything requested, the node
+     * is read from the database instead, falling back to the API if the
+     * database cannot be read.
      *
      * @param nodeId  Alfresco node id
      * @param include include flags to pass to the API (for example,
@@ -143,6 +176,17 @@ public abstract class AbstractNodeProcessor extends BaseComponent implements Nod
      * @return the fetched node entry
      */
     protected Node getNode(String nodeId, List<String> include) {
+        if (dbNodeReaderService.isEnabled() && dbNodeReaderService.supports(include)) {
+            try {
+                val node = dbNodeReaderService.getNode(nodeId);
+                if (node != null) {
+                    return node;
+                }
+            } catch (SQLException e) {
+                log.trace(e.getMessage(), e);
+                log.warn("Cannot read node {} from the database, falling back to the REST API: {}", nodeId, e.getMessage());
+            }
+        }
         return Objects.requireNonNull(nodesApi.getNode(
                 nodeId,
                 include,
@@ -150,6 +194,33 @@ public abstract class AbstractNodeProcessor extends BaseComponent implements Nod
                 null).getBody()).getEntry();
     }
 
+    /**
+     * Loads a node by id along with its path.
+     * <p>
+     * When the collector already provided the path of the node (see
+     * {@link NodeHintService}), the expensive {@code path} include is not
+     * requested and the path is filled in from the hint instead. Only the
+     * {@link PathInfo#getName() name} of the path is available in that case.
+     *
+     * @param nodeId  Alfresco node id
+     * @param include additional include flags to pass to the API
+     * @return the fetched node entry
+     */
+    protected Node getNodeWithPath(String nodeId, List<String> include) {
+        val hint = nodeHintService.get(nodeId);
+        if (hint == null || hint.path() == null) {
+            val includeWithPath = new ArrayList<>(include);
+            includeWithPath.add("path");
+            return getNode(nodeId, includeWithPath);
+        }
+        val node = getNode(nodeId, include.isEmpty() ? null : include);
+        node.setPath(new PathInfo().name(hint.path()));
+        if (node.getParentId() == null) {
+            node.setParentId(hint.parentId());
+        }
+        return node;
+    }
+
     /**
      * Applies the configured delay between processed nodes.
      * <p>
@@ -28,7 +28,9 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A processor that delegates node processing to a chain of other processors.
@@ -69,4 +71,57 @@ public class ChainingNodeProcessor extends AbstractNodeProcessor {
         }
     }
 
+    /**
+     * Collects the fields required by every chained processor.
+     *
+     * @param config processor configuration
+     * @return the union of the required fields
+     */
+    @Override
+    public Set<String> getRequiredFields(ProcessorConfig config) {
+        val fields = new HashSet<String>();
+        if (config.getArg("processors") != null) {
+            for (val c : (List<?>) config.getArg("processors")) {
+                val processorConfig = objectMapper.convertValue(c, ProcessorConfig.class);
+                fields.addAll(((NodeProcessor) context.getBean(StringUtils.uncapitalize(processorConfig.getName()))).getRequiredFields(processorConfig));
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Propagates the end of processing to every chained processor.
+     * <p>
+     * A failing processor does not prevent the following ones from releasing
+     * their resources, e.g. completing their archives or manifests; the first
+     * failure is rethrown once all of them have been called.
+     *
+     * @param config processor configuration
+     * @throws Exception the first failure of a chained processor
+     */
+    @Override
+    public void afterProcess(ProcessorConfig config) throws Exception {
+        if (config.getArg("processors") == null) {
+            return;
+        }
+        Exception failure = null;
+        for (val c : (List<?>) config.getArg("processors")) {
+            val processorConfig = objectMapper.convertValue(c, ProcessorConfig.class);
+            try {
+                ((NodeProcessor) context.getBean(StringUtils.uncapitalize(processorConfig.getName()))).afterProcess(processorConfig);
+            } catch (Exception e) {
+                log.trace(e.getMessage(), e);
+                log.error("Error completing processor {}: {}", processorConfig.getName(), e.getMessage());
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
 }
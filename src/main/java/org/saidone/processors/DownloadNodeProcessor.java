@@ -18,6 +18,7 @@
 
 package org.saidone.processors;
 
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -25,20 +26,33 @@ import lombok.val;
 import org.alfresco.core.handler.VersionsApi;
 import org.alfresco.core.model.Node;
 import org.alfresco.core.model.Version;
-import org.apache.commons.io.FileUtils;
+import org.alfresco.core.model.VersionPaging;
 import org.apache.logging.log4j.util.Strings;
+import org.saidone.export.ExportSink;
+import org.saidone.export.FileSystemExportSink;
+import org.saidone.export.ManifestExportSink;
+import org.saidone.export.ZipExportSink;
+import org.saidone.misc.DiskWriter;
 import org.saidone.model.alfresco.ContentModel;
 import org.saidone.model.config.ProcessorConfig;
+import org.saidone.service.ContentService;
+import org.saidone.utils.BucketUtils;
 import org.saidone.utils.CastUtils;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
 
 /**
  * Downloads content and metadata of a node to the local filesystem.
@@ -49,7 +63,9 @@ import java.util.*;
  * {@code *.metadata.properties.xml} file. If version history exists, each
  * version is exported with an incremental {@code .vX} suffix.
  * <p>
- * The output format is compatible with Alfresco bulk import.
+ * The output format is compatible with Alfresco bulk import. Files can
+ * either be written as they are or streamed into rolling ZIP archives, see
+ * {@link ExportSink}.
  */
 @Component
 @RequiredArgsConstructor
@@ -57,6 +73,7 @@ import java.util.*;
 public class DownloadNodeProcessor extends AbstractNodeProcessor {
 
     private final VersionsApi versionsApi;
+    private final ContentService contentService;
 
     /**
      * Name of the processor configuration argument that defines the output directory.
@@ -68,15 +85,113 @@ public class DownloadNodeProcessor extends AbstractNodeProcessor {
      */
     private static final String METADATA_FILE_SUFFIX = ".metadata.properties.xml";
 
+    /**
+     * Name of the processor configuration argument that selects an archive format.
+     */
+    private static final String ARCHIVE_FORMAT_ARG = "archive-format";
+
+    private static final String ARCHIVE_FORMAT_ZIP = "zip";
+
+    /**
+     * Name of the processor configuration argument that selects how metadata
+     * is written, either one XML file per item or a manifest.
+     */
+    private static final String METADATA_FORMAT_ARG = "metadata-format";
+
+    private static final String METADATA_FORMAT_XML = "xml";
+
+    /**
+     * Name of the processor configuration argument that selects the local
+     * directory layout.
+     */
+    private static final String LAYOUT_ARG = "layout";
+
+    private static final String LAYOUT_MIRROR = "mirror";
+
+    private static final String LAYOUT_SHARDED = "sharded";
+
+    /**
+     * Sink of each consumer thread.
+     */
+    private final ThreadLocal<ExportSink> sinks = new ThreadLocal<>();
+
+    /**
+     * Counter used to give each sink a distinct name.
+     */
+    private final AtomicInteger sinkCounter = new AtomicInteger(0);
+
+    /**
+     * Counter used to give each manifest a distinct name.
+     */
+    private final AtomicInteger manifestCounter = new AtomicInteger(0);
+
+    /**
+     * Page size used when listing the version history.
+     */
+    private static final int VERSIONS_PAGE_SIZE = 100;
+
+    /**
+     * Executor running version downloads, concurrency is bounded per node.
+     */
+    private final ExecutorService versionsExecutor = Executors.newCachedThreadPool();
+
+    /**
+     * Size of the buffers handed over to the disk writer.
+     */
+    private static final int DISK_WRITER_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Disk writer shared by the consumer threads, created on first use when enabled.
+     */
+    private volatile DiskWriter diskWriter;
+
+    /**
+     * A previous version of a node along with its position in chronological order.
+     *
+     * @param number  1-based position of the version, oldest first
+     * @param version the version
+     */
+    private record NumberedVersion(int number, Version version) {
+    }
+
+    /**
+     * Stops the executor of version downloads.
+     */
+    @PreDestroy
+    public void shutdownExecutor() {
+        versionsExecutor.shutdownNow();
+    }
+
     /**
      * Downloads the content and metadata of the node identified by {@code nodeId}.
      *
      * <p>The node is fetched from Alfresco with its properties and path
      * information. A folder mirroring the node's repository path is then created
      * under the configured output directory. The node's metadata and binary
-     * content are written into this folder. When version history is present, all
-     * versions except the current one are exported in chronological order and
-     * suffixed with {@code .vX} to avoid overwriting the latest content.</p>
+     * content are written into this folder. For versionable nodes, the versions
+     * except the current one are exported and suffixed with {@code .vX}, where
+     * {@code X} is the position of the version in chronological order, to avoid
+     * overwriting the latest content.</p>
+     *
+     * <p>The exported versions can be restricted with the optional
+     * {@code max-versions} (latest N previous versions) and
+     * {@code versions-since} (ISO-8601 date, versions modified at or after it)
+     * arguments. Versions of a node are downloaded concurrently, at most
+     * {@code version-concurrency} at a time (default 4).</p>
+     *
+     * <p>When the {@code incremental} argument is {@code true}, nodes and
+     * versions already exported by a previous run and not changed since then
+     * are skipped (see {@link #isUpToDate(Node, Path)}). Incremental exports
+     * are only supported when writing plain files.</p>
+     *
+     * <p>When {@code archive-format} is set to {@code zip}, files are streamed
+     * into rolling archives of about {@code archive-size-mb} megabytes each
+     * (default 1024), one set of archives per consumer thread, with an optional
+     * {@code archive-compression-level} from 0 to 9.</p>
+     *
+     * <p>When {@code layout} is set to {@code sharded}, files are spread over
+     * hash buckets instead of mirroring the repository path (see
+     * {@link #getDestinationPath(Node, ProcessorConfig)}).</p>
      *
      * @param nodeId id of the node to download
      * @param config processor configuration containing the {@code output-dir}
@@ -86,25 +201,235 @@ public class DownloadNodeProcessor extends AbstractNodeProcessor {
     @SneakyThrows
     public void processNode(String nodeId, ProcessorConfig config) {
         try {
-            val node = getNode(nodeId, List.of("properties", "path"));
-            val nodePath = node.getPath().getName();
-            val destinationPath = createDestinationPath(getOutputDirectory(config), nodePath);
-            saveNodeMetadata(node, destinationPath);
-            saveNodeContent(node, destinationPath);
-            val versions = Objects.requireNonNull(versionsApi.listVersionHistory(nodeId, List.of("aspectNames", "properties"), null, 0, 100).getBody()).getList().getEntries();
-            if (!versions.isEmpty()) {
-                Collections.reverse(versions);
-                for (var i = 0; i < versions.size() - 1; i++) {
-                    saveNodeMetadata(nodeId, versions.get(i).getEntry(), destinationPath, i + 1);
-                    saveNodeContent(nodeId, versions.get(i).getEntry(), destinationPath, i + 1);
-                }
-            }
+            val node = getNodeWithPath(nodeId, List.of("properties"));
+            exportNode(node, getSink(config), config);
         } catch (Exception e) {
             log.error("Error processing node {}: {}", nodeId, e.getMessage());
             throw new RuntimeException("Failed to process node: " + nodeId, e);
         }
     }
 
+    /**
+     * Exports the metadata, content and versions of a node to a sink.
+     *
+     * @param node   the node, including properties and path
+     * @param sink   sink receiving the files
+     * @param config processor configuration
+     * @throws IOException          if the files cannot be written
+     * @throws InterruptedException if interrupted while downloading versions
+     */
+    private void exportNode(Node node, ExportSink sink, ProcessorConfig config) throws IOException, InterruptedException {
+        val nodeId = node.getId();
+        val destinationPath = getDestinationPath(node, config);
+        sink.createDirectories(destinationPath);
+        val localPath = getIncrementalPath(sink, destinationPath, config);
+        if (localPath != null && isUpToDate(node, localPath)) {
+            log.debug("Node {} is up to date in {}", nodeId, localPath);
+            return;
+        }
+        saveNodeMetadata(sink, node, destinationPath, config);
+        saveNodeContent(sink, node, destinationPath);
+        if (node.getAspectNames() != null && node.getAspectNames().contains(ContentModel.ASP_VERSIONABLE)) {
+            saveVersions(sink, nodeId, listVersions(nodeId, config), destinationPath, localPath, config);
+        }
+    }
+
+    /**
+     * The path and parent of the node are taken from the collector when
+     * available, see {@link #getNodeWithPath(String, List)}.
+     *
+     * @param config processor configuration
+     * @return {@code path} and {@code parentId}
+     */
+    @Override
+    public Set<String> getRequiredFields(ProcessorConfig config) {
+        return Set.of("path", "parentId");
+    }
+
+    /**
+     * Lists the previous versions of a node that have to be exported.
+     *
+     * <p>The history is returned by Alfresco newest first and is paged
+     * through completely, stopping early once the {@code max-versions} or
+     * {@code versions-since} limits are reached. The current version is
+     * skipped since it matches the node content.</p>
+     *
+     * @param nodeId id of the node
+     * @param config processor configuration
+     * @return the versions to export, newest first
+     */
+    private List<NumberedVersion> listVersions(String nodeId, ProcessorConfig config) {
+        val maxVersions = config.getArg("max-versions") != null ? (int) config.getArg("max-versions") : Integer.MAX_VALUE;
+        val since = config.getArg("versions-since") != null ? OffsetDateTime.parse((String) config.getArg("versions-since")) : null;
+        val versions = new ArrayList<Version>();
+        var skipCount = 0;
+        var totalItems = (Long) null;
+        VersionPaging versionPaging;
+        do {
+            versionPaging = Objects.requireNonNull(versionsApi.listVersionHistory(nodeId, List.of("aspectNames", "properties"), null, skipCount, VERSIONS_PAGE_SIZE).getBody());
+            totalItems = versionPaging.getList().getPagination().getTotalItems();
+            for (val entry : versionPaging.getList().getEntries()) {
+                versions.add(entry.getEntry());
+            }
+            skipCount += VERSIONS_PAGE_SIZE;
+            // the first entry is the current version
+            if (totalItems != null && (versions.size() - 1 >= maxVersions ||
+                    (since != null && versions.get(versions.size() - 1).getModifiedAt().isBefore(since)))) {
+                break;
+            }
+        } while (versionPaging.getList().getPagination().isHasMoreItems());
+        val count = totalItems != null ? totalItems.intValue() : versions.size();
+        val result = new ArrayList<NumberedVersion>();
+        for (var i = 1; i < versions.size() && result.size() < maxVersions; i++) {
+            val version = versions.get(i);
+            if (since != null && version.getModifiedAt().isBefore(since)) {
+                break;
+            }
+            result.add(new NumberedVersion(count - i, version));
+        }
+        return result;
+    }
+
+    /**
+     * Downloads metadata and content of the given versions concurrently, with
+     * at most {@code version-concurrency} downloads in flight for this node.
+     * Sinks that are not thread-safe, e.g. ZIP archives, get the versions one
+     * at a time on the calling thread instead.
+     *
+     * @param sink            sink receiving the files
+     * @param nodeId          id of the node
+     * @param versions        versions to export
+     * @param destinationPath directory where the files are written
+     * @param localPath       local directory holding a previous export to
+     *                        compare with, or {@code null}
+     * @param config          processor configuration
+     * @throws InterruptedException if interrupted while waiting for a slot
+     * @throws IOException          if previously exported files cannot be read
+     */
+    private void saveVersions(ExportSink sink, String nodeId, List<NumberedVersion> versions, Path destinationPath, Path localPath, ProcessorConfig config) throws InterruptedException, IOException {
+        val permits = new Semaphore(config.getArg("version-concurrency") != null ? Math.max(1, (int) config.getArg("version-concurrency")) : 4);
+        val futures = new ArrayList<CompletableFuture<Void>>();
+        for (val v : versions) {
+            if (localPath != null && isUpToDate(v, localPath)) {
+                log.debug("Node {} version {} is up to date in {}", nodeId, v.version().getId(), localPath);
+                continue;
+            }
+            if (!sink.isThreadSafe()) {
+                saveNodeMetadata(sink, nodeId, v.version(), destinationPath, v.number());
+                saveNodeContent(sink, nodeId, v.version(), destinationPath, v.number());
+                continue;
+            }
+            permits.acquire();
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    saveNodeMetadata(sink, nodeId, v.version(), destinationPath, v.number());
+                    saveNodeContent(sink, nodeId, v.version(), destinationPath, v.number());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    permits.release();
+                }
+            }, versionsExecutor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    /**
+     * Returns the local directory to compare with when the incremental mode
+     * is enabled.
+     *
+     * @param sink            sink receiving the files
+     * @param destinationPath relative directory of the node
+     * @param config          processor configuration
+     * @return the local directory, or {@code null} if the {@code incremental}
+     * argument is not {@code true} or the sink does not write plain files
+     */
+    private static Path getIncrementalPath(ExportSink sink, Path destinationPath, ProcessorConfig config) {
+        if (!Boolean.TRUE.equals(config.getArg("incremental"))) {
+            return null;
+        }
+        if (sink instanceof FileSystemExportSink fileSystemExportSink) {
+            return fileSystemExportSink.resolve(destinationPath);
+        }
+        log.warn("Incremental mode is not supported with archive-format --> {} and metadata-format --> {}", config.getArg(ARCHIVE_FORMAT_ARG), config.getArg(METADATA_FORMAT_ARG));
+        return null;
+    }
+
+    /**
+     * Checks whether a node has already been exported and has not changed
+     * since.
+     *
+     * <p>The metadata file left by the previous run must report the same
+     * modification date and version label as the node, and the content file
+     * on disk must have the same size as the node content. A new version
+     * always changes the modification date of the node, so when the node is
+     * up to date its version history is too.</p>
+     *
+     * @param node            the node to export
+     * @param destinationPath directory where the node is exported
+     * @return {@code true} if nothing has to be downloaded
+     * @throws IOException if the existing files cannot be read
+     */
+    private boolean isUpToDate(Node node, Path destinationPath) throws IOException {
+        val metadata = loadMetadata(destinationPath.resolve(String.format("%s%s", node.getName(), METADATA_FILE_SUFFIX)));
+        if (metadata == null ||
+                !node.getModifiedAt().toString().equals(metadata.getProperty(ContentModel.PROP_MODIFIED)) ||
+                !Objects.equals(Objects.toString(CastUtils.castToMapOfObjectObject(node.getProperties(), String.class, Object.class).get(ContentModel.PROP_VERSION_LABEL), null),
+                        metadata.getProperty(ContentModel.PROP_VERSION_LABEL))) {
+            return false;
+        }
+        return node.isIsFolder() || isSameSize(destinationPath.resolve(node.getName()), node.getContent() == null ? null : node.getContent().getSizeInBytes());
+    }
+
+    /**
+     * Checks whether a version has already been exported. Versions are
+     * immutable, so both files being present with the expected content size
+     * is enough.
+     *
+     * @param version         the version to export
+     * @param destinationPath directory where the version is exported
+     * @return {@code true} if nothing has to be downloaded
+     * @throws IOException if the file size cannot be read
+     */
+    private boolean isUpToDate(NumberedVersion version, Path destinationPath) throws IOException {
+        val name = version.version().getName();
+        return Files.exists(destinationPath.resolve(String.format("%s%s.v%d", name, METADATA_FILE_SUFFIX, version.number()))) &&
+                isSameSize(destinationPath.resolve(String.format("%s.v%d", name, version.number())),
+                        version.version().getContent() == null ? null : version.version().getContent().getSizeInBytes());
+    }
+
+    /**
+     * Compares the size of a local file with the expected content size. Empty
+     * content is never written, so a missing file matches a size of zero.
+     *
+     * @param path         local file
+     * @param expectedSize expected size in bytes, {@code null} meaning no content
+     * @return {@code true} if the sizes match
+     * @throws IOException if the file size cannot be read
+     */
+    private static boolean isSameSize(Path path, Long expectedSize) throws IOException {
+        val actualSize = Files.exists(path) ? Files.size(path) : 0L;
+        return actualSize == (expectedSize == null ? 0L : expectedSize);
+    }
+
+    /**
+     * Loads a metadata file written by a previous run.
+     *
+     * @param xmlPath metadata file
+     * @return the loaded properties or {@code null} if the file does not exist
+     * @throws IOException if the file cannot be read
+     */
+    private static Properties loadMetadata(Path xmlPath) throws IOException {
+        if (!Files.exists(xmlPath)) {
+            return null;
+        }
+        val properties = new Properties();
+        try (val in = Files.newInputStream(xmlPath)) {
+            properties.loadFromXML(in);
+        }
+        return properties;
+    }
+
     /**
      * Resolves the output directory from the processor configuration.
      *
@@ -124,20 +449,128 @@ public class DownloadNodeProcessor extends AbstractNodeProcessor {
     }
 
     /**
-     * Creates the directory structure for the node inside the output directory.
+     * Computes the directory of the node relative to the root of the export.
      *
      * <p>The returned path points to the folder that will contain the node's
-     * binary content and metadata.</p>
+     * binary content and metadata and mirrors the repository path.</p>
+     *
+     * @param nodePath path of the node in the repository
+     * @return the relative directory
+     */
+    private static Path getDestinationPath(String nodePath) {
+        return Paths.get(nodePath.replaceFirst("^/+", ""));
+    }
+
+    /**
+     * Computes the directory of the node relative to the root of the export
+     * according to the configured {@code layout}.
+     *
+     * <p>The default {@code mirror} layout follows the repository path. The
+     * {@code sharded} layout spreads nodes over a bounded tree of hash
+     * buckets (see {@link BucketUtils#hashBucket(String, int, int)}) followed
+     * by a directory named after the node id, so that huge repository folders
+     * do not turn into huge local directories.</p>
      *
-     * @param outputDirString configured output directory
-     * @param nodePath        path of the node relative to the repository
-     * @return the created directory
-     * @throws IOException if the directories cannot be created
+     * @param node   the node
+     * @param config processor configuration
+     * @return the relative directory
      */
-    private Path createDestinationPath(String outputDirString, String nodePath) throws IOException {
-        val destinationPath = Paths.get(outputDirString, nodePath);
-        Files.createDirectories(destinationPath);
-        return destinationPath;
+    private static Path getDestinationPath(Node node, ProcessorConfig config) {
+        if (!isSharded(config)) {
+            return getDestinationPath(node.getPath().getName());
+        }
+        val depth = config.getArg("shard-depth") != null ? (int) config.getArg("shard-depth") : 2;
+        val width = config.getArg("shard-width") != null ? (int) config.getArg("shard-width") : 2;
+        val bucket = new ArrayList<>(BucketUtils.hashBucket(node.getId(), depth, width));
+        bucket.add(node.getId());
+        return Paths.get(String.join("/", bucket));
+    }
+
+    /**
+     * @param config processor configuration
+     * @return whether nodes are exported with the sharded layout
+     */
+    private static boolean isSharded(ProcessorConfig config) {
+        val layout = (String) config.getArg(LAYOUT_ARG);
+        if (Strings.isBlank(layout) || LAYOUT_MIRROR.equals(layout)) {
+            return false;
+        }
+        if (LAYOUT_SHARDED.equals(layout)) {
+            return true;
+        }
+        throw new IllegalArgumentException(String.format("Unsupported layout: %s", layout));
+    }
+
+    /**
+     * Returns the disk writer shared by the consumer threads, creating it
+     * on first use.
+     *
+     * @param config processor configuration
+     * @return the disk writer, or {@code null} if writes are performed by the
+     * consumer threads
+     */
+    private DiskWriter getDiskWriter(ProcessorConfig config) {
+        if (diskWriter == null && config.getArg("disk-writer-threads") != null && (int) config.getArg("disk-writer-threads") > 0) {
+            synchronized (this) {
+                if (diskWriter == null) {
+                    val maxInFlightBytes = (config.getArg("max-in-flight-mb") != null ? ((Number) config.getArg("max-in-flight-mb")).longValue() : 64L) * 1024 * 1024;
+                    diskWriter = new DiskWriter((int) config.getArg("disk-writer-threads"), DISK_WRITER_BUFFER_SIZE, maxInFlightBytes);
+                }
+            }
+        }
+        return diskWriter;
+    }
+
+    /**
+     * Returns the sink of the calling consumer thread, creating it on first use.
+     *
+     * @param config processor configuration
+     * @return the sink
+     */
+    private ExportSink getSink(ProcessorConfig config) {
+        var sink = sinks.get();
+        if (sink == null) {
+            val outputDir = Paths.get(getOutputDirectory(config));
+            val archiveFormat = (String) config.getArg(ARCHIVE_FORMAT_ARG);
+            if (Strings.isBlank(archiveFormat)) {
+                val rangeThreshold = config.getArg("range-threshold-mb") != null ? ((Number) config.getArg("range-threshold-mb")).longValue() * 1024 * 1024 : Long.MAX_VALUE;
+                val rangeChunkSize = (config.getArg("range-chunk-mb") != null ? ((Number) config.getArg("range-chunk-mb")).longValue() : 16L) * 1024 * 1024;
+                val rangeParallelism = config.getArg("range-parallelism") != null ? (int) config.getArg("range-parallelism") : 4;
+                sink = new FileSystemExportSink(outputDir, contentService, rangeThreshold, rangeChunkSize, rangeParallelism, getDiskWriter(config));
+            } else if (ARCHIVE_FORMAT_ZIP.equals(archiveFormat)) {
+                sink = new ZipExportSink(outputDir,
+                        String.format("export-%d", sinkCounter.incrementAndGet()),
+                        (config.getArg("archive-size-mb") != null ? ((Number) config.getArg("archive-size-mb")).longValue() : 1024L) * 1024 * 1024,
+                        config.getArg("archive-compression-level") != null ? (int) config.getArg("archive-compression-level") : Deflater.DEFAULT_COMPRESSION,
+                        contentService);
+            } else {
+                throw new IllegalArgumentException(String.format("Unsupported archive format: %s", archiveFormat));
+            }
+            val metadataFormat = (String) config.getArg(METADATA_FORMAT_ARG);
+            if (!Strings.isBlank(metadataFormat) && !METADATA_FORMAT_XML.equals(metadataFormat)) {
+                sink = new ManifestExportSink(sink,
+                        outputDir.resolve(String.format("manifest-%d.%s", manifestCounter.incrementAndGet(), metadataFormat)),
+                        metadataFormat);
+            }
+            sinks.set(sink);
+        }
+        return sink;
+    }
+
+    /**
+     * Closes the sink of the calling consumer thread, completing its archive
+     * if any.
+     *
+     * @param config processor configuration
+     * @throws IOException if the sink cannot be closed
+     */
+    @Override
+    public void afterProcess(ProcessorConfig config) throws IOException {
+        val sink = sinks.get();
+        if (sink != null) {
+            sinks.remove();
+            sink.close();
+        }
     }
 
     /**
@@ -149,11 +582,16 @@ public class DownloadNodeProcessor extends AbstractNodeProcessor {
      * binary content using the node name with the {@link #METADATA_FILE_SUFFIX}
      * suffix.</p>
      *
+     * <p>With the sharded layout the repository path of the node is recorded
+     * as well, under the {@code path} key.</p>
+     *
+     * @param sink            sink receiving the file
      * @param node            the node whose metadata is to be saved
      * @param destinationPath directory where the metadata file is created
+     * @param config          processor configuration
      * @throws IOException if the file cannot be written
      */
-    private void saveNodeMetadata(Node node, Path destinationPath) throws IOException {
+    private void saveNodeMetadata(ExportSink sink, Node node, Path destinationPath, ProcessorConfig config) throws IOException {
         val properties = castProperties(node.getProperties());
 
         // additional properties
@@ -163,9 +601,12 @@ public class DownloadNodeProcessor extends AbstractNodeProcessor {
         properties.setProperty(ContentModel.PROP_CREATED, node.getCreatedAt().toString());
         properties.setProperty(ContentModel.PROP_MODIFIER, node.getModifiedByUser().getDisplayName());
         properties.setProperty(ContentModel.PROP_MODIFIED, node.getModifiedAt().toString());
+        if (isSharded(config)) {
+            properties.setProperty("path", String.format("%s/%s", node.getPath().getName(), node.getName()));
+        }
 
         val xmlPath = destinationPath.resolve(String.format("%s%s", node.getName(), METADATA_FILE_SUFFIX));
-        properties.storeToXML(new FileOutputStream(xmlPath.toString()), null);
+        sink.writeMetadata(xmlPath, properties);
 
         log.debug("Saved node {} properties to {}", node.getId(), xmlPath);
     }
@@ -179,13 +620,14 @@ public class DownloadNodeProcessor extends AbstractNodeProcessor {
      * suffix (for example {@code .v1}) so that multiple revisions can coexist in
      * the same folder.</p>
      *
+     * @param sink            sink receiving the file
      * @param nodeId          identifier of the node that owns the version
      * @param version         version whose metadata will be written
      * @param destinationPath directory where the metadata file must be created
      * @param versionNumber   sequential number used to distinguish versioned files
      * @throws IOException if the metadata file cannot be written
      */
-    private void saveNodeMetadata(String nodeId, Version version, Path destinationPath, Integer versionNumber) throws IOException {
+    private void saveNodeMetadata(ExportSink sink, String nodeId, Version version, Path destinationPath, Integer versionNumber) throws IOException {
         val properties = castProperties(version.getProperties());
 
         // additional properties
@@ -195,7 +637,7 @@ public class DownloadNodeProcessor extends AbstractNodeProcessor {
         properties.setProperty(ContentModel.PROP_MODIFIED, version.getModifiedAt().toString());
 
         val xmlPath = destinationPath.resolve(String.format("%s%s.v%d", version.getName(), METADATA_FILE_SUFFIX, versionNumber));
-        properties.storeToXML(new FileOutputStream(xmlPath.toString()), null);
+        sink.writeMetadata(xmlPath, properties);
 
         log.debug("Saved node {} version {} properties to {}", nodeId, version.getId(), xmlPath);
     }
@@ -204,25 +646,25 @@ public class DownloadNodeProcessor extends AbstractNodeProcessor {
      * Writes the binary content of the given node to the specified destination path.
      *
      * <p>If the node is a folder, the corresponding directory structure is created
-     * without writing any content. Otherwise the node content is downloaded and
-     * stored using the node's name. Empty payloads are ignored to avoid creating
+     * without writing any content. Otherwise the node content is streamed to a
+     * file named after the node. Empty payloads are ignored to avoid creating
      * zero-byte files.</p>
      *
+     * @param sink            sink receiving the file
      * @param node            the node whose content is to be saved
      * @param destinationPath the folder where the content will be stored
      * @throws IOException if an error occurs during writing the file
      */
-    private void saveNodeContent(Node node, Path destinationPath) throws IOException {
+    private void saveNodeContent(ExportSink sink, Node node, Path destinationPath) throws IOException {
         if (node.isIsFolder()) {
-            Files.createDirectories(Paths.get(String.valueOf(destinationPath), node.getName()));
+            sink.createDirectories(destinationPath.resolve(node.getName()));
+        } else if (node.getContent() != null && node.getContent().getSizeInBytes() != null && node.getContent().getSizeInBytes() == 0) {
+            log.warn("Node {} content is empty", node.getId());
         } else {
-            val nodeContent = getNodeContentBytes(node.getId());
-            if (nodeContent.length == 0) {
-                return;
-            }
             val binPath = destinationPath.resolve(node.getName());
-            FileUtils.writeByteArrayToFile(binPath.toFile(), nodeContent);
-            log.debug("Saved node {} content to {}", node.getId(), binPath);
+            if (downloadContent(sink, node.getId(), null, node.getContent() == null ? null : node.getContent().getSizeInBytes(), binPath) > 0) {
+                log.debug("Saved node {} content to {}", node.getId(), binPath);
+            }
         }
     }
 
@@ -232,58 +674,46 @@ public class DownloadNodeProcessor extends AbstractNodeProcessor {
      * <p>The file is named after the node followed by the {@code .vX} suffix,
      * where {@code X} corresponds to {@code versionNumber}.</p>
      *
+     * @param sink            sink receiving the file
      * @param nodeId          identifier of the node to which the version belongs
      * @param version         version whose binary content has to be saved
      * @param destinationPath folder where the content will be written
      * @param versionNumber   sequential number used to disambiguate versioned content
-     * @throws IOException if an error occurs while writing the file
      */
-    private void saveNodeContent(String nodeId, Version version, Path destinationPath, Integer versionNumber) throws IOException {
-        val nodeContent = getNodeContentBytes(nodeId, version);
-        if (nodeContent.length == 0) {
-            return;
-        }
+    private void saveNodeContent(ExportSink sink, String nodeId, Version version, Path destinationPath, Integer versionNumber) {
         val binPath = destinationPath.resolve(String.format("%s.v%d", version.getName(), versionNumber));
-        FileUtils.writeByteArrayToFile(binPath.toFile(), nodeContent);
-        log.debug("Saved node {} version {} content to {}", nodeId, version.getId(), binPath);
-    }
-
-    /**
-     * Retrieves the binary content of a node using the {@link #nodesApi}.
-     *
-     * @param nodeId id of the node
-     * @return byte array representing the content or an empty array if the
-     * content cannot be retrieved
-     */
-    private byte[] getNodeContentBytes(String nodeId) {
-        return getNodeContentBytes(nodeId, null);
+        if (downloadContent(sink, nodeId, version, version.getContent() == null ? null : version.getContent().getSizeInBytes(), binPath) > 0) {
+            log.debug("Saved node {} version {} content to {}", nodeId, version.getId(), binPath);
+        }
     }
 
     /**
-     * Retrieves the binary content associated with a specific node version.
+     * Streams the content of a node, or of one of its versions, to a file
+     * of the sink.
      *
-     * @param nodeId  identifier of the node that owns the version
-     * @param version version whose content should be downloaded
-     * @return the binary content of the version or an empty array if it cannot be retrieved
+     * @param sink    sink receiving the file
+     * @param nodeId  identifier of the node
+     * @param version version whose content should be downloaded, or
+     *                {@code null} for the current content
+     * @param size    known size of the content, or {@code null}
+     * @param binPath destination file
+     * @return number of bytes written, {@code 0} if the content is empty or
+     * cannot be retrieved
      */
-    private byte[] getNodeContentBytes(String nodeId, Version version) {
-        var nodeContentBody = (Resource) null;
+    private long downloadContent(ExportSink sink, String nodeId, Version version, Long size, Path binPath) {
         try {
-            nodeContentBody = version == null ?
-                    nodesApi.getNodeContent(nodeId, null, null, null).getBody() :
-                    versionsApi.getVersionContent(nodeId, version.getId(), null, null, null).getBody();
-            if (nodeContentBody == null) {
+            val written = sink.writeContent(binPath, nodeId, version == null ? null : version.getId(), size);
+            if (written == 0) {
                 log.warn("Node {} content is empty", nodeId);
-                return new byte[0];
             }
-            return nodeContentBody.getContentAsByteArray();
+            return written;
         } catch (Exception e) {
             if (version == null) {
                 log.warn("Could not retrieve content for node {}: {}", nodeId, e.getMessage());
             } else {
                 log.warn("Could not retrieve content for node {} and version {}: {}", nodeId, version.getId(), e.getMessage());
             }
-            return new byte[0];
+            return 0;
         }
     }
 
@@ -0,0 +1,379 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.processors;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.alfresco.core.model.Node;
+import org.apache.logging.log4j.util.Strings;
+import org.saidone.export.RecordWriter;
+import org.saidone.export.RowWriter;
+import org.saidone.model.config.ProcessorConfig;
+import org.saidone.utils.CastUtils;
+import org.saidone.utils.DateUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exports selected fields and properties of each node as rows of a typed
+ * table, for analytics on large repositories.
+ * <p>
+ * Columns are taken from the {@code columns} argument: built-in names such
+ * as {@code type}, {@code size} or {@code path} map to node fields, while
+ * prefixed names such as {@code cm:title} map to node properties. Built-in
+ * columns have a fixed type, properties are strings unless typed with the
+ * {@code column-types} argument (see {@link ColumnType}). Each consumer
+ * thread writes its own {@code metadata-<n>.csv} or {@code metadata-<n>.jsonl}
+ * file in {@code output-dir}, along with a {@code metadata-<n>.schema.json}
+ * file describing the columns, so that analysis tools can load the rows with
+ * their types.
+ * <p>
+ * With the {@code parquet} format each consumer thread writes a
+ * {@code metadata-<n>.parquet} file instead, holding the schema itself and
+ * buffering up to one row group of {@code row-group-size-mb} in memory. The
+ * Parquet writer is only available when built with the {@code parquet} Maven
+ * profile.
+ */
+@Component
+@Slf4j
+public class MetadataExportProcessor extends AbstractNodeProcessor {
+
+    private static final String FORMAT_CSV = "csv";
+    private static final String FORMAT_JSONL = "jsonl";
+    private static final String FORMAT_PARQUET = "parquet";
+
+    /**
+     * Parquet writer, compiled with the {@code parquet} Maven profile only.
+     */
+    private static final String PARQUET_WRITER = "org.saidone.export.ParquetRowWriter";
+
+    /**
+     * Columns exported when none are configured.
+     */
+    private static final List<String> DEFAULT_COLUMNS = List.of("id", "name", "type", "aspects", "size", "mimetype", "created", "modified", "path");
+
+    /**
+     * Type of a column.
+     * <p>
+     * In JSON lines {@code long}, {@code double} and {@code boolean} values are
+     * written as JSON numbers and booleans, {@code list} values as arrays and
+     * {@code datetime} values as ISO-8601 strings; in CSV lists are joined by
+     * commas.
+     */
+    private enum ColumnType {
+        STRING, LONG, DOUBLE, BOOLEAN, DATETIME, LIST
+    }
+
+    /**
+     * A column of the export.
+     *
+     * @param name built-in column name or property name
+     * @param type type of the values
+     */
+    private record Column(String name, ColumnType type) {
+    }
+
+    /**
+     * Output file and columns of a consumer thread.
+     *
+     * @param writer    text output file, {@code null} for Parquet
+     * @param rowWriter Parquet output file, {@code null} otherwise
+     * @param columns   exported columns
+     * @param format    {@link #FORMAT_CSV}, {@link #FORMAT_JSONL} or
+     *                  {@link #FORMAT_PARQUET}
+     */
+    private record Export(RecordWriter writer, RowWriter rowWriter, List<Column> columns, String format) {
+    }
+
+    /**
+     * Export of each consumer thread.
+     */
+    private final ThreadLocal<Export> exports = new ThreadLocal<>();
+
+    /**
+     * Counter used to give each output file a distinct name.
+     */
+    private final AtomicInteger exportCounter = new AtomicInteger(0);
+
+    /**
+     * Retrieves the node with the information required by the configured
+     * columns and writes its row.
+     *
+     * @param nodeId id of the node
+     * @param config processor configuration
+     */
+    @Override
+    @SneakyThrows
+    public void processNode(String nodeId, ProcessorConfig config) {
+        val export = getExport(config);
+        val names = export.columns().stream().map(Column::name).toList();
+        val include = new ArrayList<String>();
+        if (names.stream().anyMatch(c -> c.contains(":"))) {
+            include.add("properties");
+        }
+        if (names.contains("aspects")) {
+            include.add("aspectNames");
+        }
+        val node = names.contains("path") ? getNodeWithPath(nodeId, include) : getNode(nodeId, include.isEmpty() ? null : include);
+        if (FORMAT_PARQUET.equals(export.format())) {
+            val row = new ArrayList<>(export.columns().size());
+            for (val column : export.columns()) {
+                row.add(getValue(node, column));
+            }
+            export.rowWriter().writeRow(row);
+        } else if (FORMAT_CSV.equals(export.format())) {
+            val row = new ArrayList<>(export.columns().size());
+            for (val column : export.columns()) {
+                val value = getValue(node, column);
+                row.add(value instanceof Collection<?> collection ? String.join(",", collection.stream().map(String::valueOf).toList()) : value);
+            }
+            export.writer().writeCsv(row);
+        } else {
+            val record = new LinkedHashMap<String, Object>();
+            for (val column : export.columns()) {
+                record.put(column.name(), getValue(node, column));
+            }
+            export.writer().writeJson(record);
+        }
+    }
+
+    /**
+     * The path of the node is taken from the collector when available and
+     * the {@code path} column is exported.
+     *
+     * @param config processor configuration
+     * @return {@code path} and {@code parentId} if needed, none otherwise
+     */
+    @Override
+    public Set<String> getRequiredFields(ProcessorConfig config) {
+        val columns = config.getArg("columns") != null ? CastUtils.castToListOfStrings(config.getArg("columns")) : DEFAULT_COLUMNS;
+        return columns.contains("path") ? Set.of("path", "parentId") : Set.of();
+    }
+
+    /**
+     * Closes the output file of the calling consumer thread, flushing the
+     * pending row group of a Parquet export.
+     *
+     * @param config processor configuration
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void afterProcess(ProcessorConfig config) throws IOException {
+        val export = exports.get();
+        if (export != null) {
+            exports.remove();
+            if (export.rowWriter() != null) {
+                export.rowWriter().close();
+            } else {
+                export.writer().close();
+            }
+        }
+    }
+
+    /**
+     * Returns the export of the calling consumer thread, creating its output
+     * and schema files on first use.
+     *
+     * @param config processor configuration
+     * @return the export
+     * @throws IOException if the output file cannot be created
+     */
+    private Export getExport(ProcessorConfig config) throws IOException {
+        var export = exports.get();
+        if (export == null) {
+            val outputDir = (String) config.getArg("output-dir");
+            if (Strings.isBlank(outputDir)) {
+                throw new IllegalArgumentException("Output directory argument 'output-dir' is required and cannot be empty");
+            }
+            val format = config.getArg("format") != null ? (String) config.getArg("format") : FORMAT_CSV;
+            if (!FORMAT_CSV.equals(format) && !FORMAT_JSONL.equals(format) && !FORMAT_PARQUET.equals(format)) {
+                throw new IllegalArgumentException(String.format("Unsupported format: %s", format));
+            }
+            val columns = getColumns(config);
+            val number = exportCounter.incrementAndGet();
+            val file = Paths.get(outputDir.trim(), String.format("metadata-%d.%s", number, format));
+            if (FORMAT_PARQUET.equals(format)) {
+                val rowGroupSizeMb = config.getArg("row-group-size-mb") != null ? (int) config.getArg("row-group-size-mb") : 32;
+                val compression = config.getArg("compression") != null ? (String) config.getArg("compression") : "snappy";
+                export = new Export(null, createParquetWriter(file, columns, rowGroupSizeMb * 1024L * 1024L, compression), columns, format);
+            } else {
+                export = new Export(new RecordWriter(file), null, columns, format);
+                if (FORMAT_CSV.equals(format)) {
+                    export.writer().writeCsv(columns.stream().map(Column::name).toList());
+                }
+                writeSchema(Paths.get(outputDir.trim(), String.format("metadata-%d.schema.json", number)), columns);
+            }
+            exports.set(export);
+            log.debug("Exporting metadata to {}", file);
+        }
+        return export;
+    }
+
+    /**
+     * Builds the columns of the export from the {@code columns} and
+     * {@code column-types} arguments.
+     *
+     * @param config processor configuration
+     * @return the columns
+     */
+    private static List<Column> getColumns(ProcessorConfig config) {
+        val names = config.getArg("columns") != null ? CastUtils.castToListOfStrings(config.getArg("columns")) : DEFAULT_COLUMNS;
+        val types = config.getArg("column-types") != null
+                ? CastUtils.castToMapOfObjectObject(config.getArg("column-types"), String.class, String.class)
+                : Map.<String, String>of();
+        val columns = new ArrayList<Column>(names.size());
+        for (val name : names) {
+            if (name.contains(":")) {
+                val type = types.get(name);
+                columns.add(new Column(name, type != null ? ColumnType.valueOf(type.toUpperCase(Locale.ROOT)) : ColumnType.STRING));
+            } else {
+                columns.add(new Column(name, switch (name) {
+                    case "id", "name", "type", "parent-id", "mimetype", "encoding", "creator", "modifier", "path" -> ColumnType.STRING;
+                    case "aspects" -> ColumnType.LIST;
+                    case "size" -> ColumnType.LONG;
+                    case "created", "modified" -> ColumnType.DATETIME;
+                    default -> throw new IllegalArgumentException(String.format("Unknown column: %s", name));
+                }));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Creates the Parquet writer of a consumer thread.
+     *
+     * @param file         destination file
+     * @param columns      exported columns
+     * @param rowGroupSize size of a row group in bytes
+     * @param compression  compression codec
+     * @return the writer
+     * @throws IOException if the file cannot be created
+     */
+    private static RowWriter createParquetWriter(Path file, List<Column> columns, long rowGroupSize, String compression) throws IOException {
+        final Class<?> writerClass;
+        try {
+            writerClass = Class.forName(PARQUET_WRITER);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Parquet format requires a build with the 'parquet' profile (mvn package -Pparquet)", e);
+        }
+        val names = columns.stream().map(Column::name).toList();
+        val types = columns.stream().map(c -> c.type().name().toLowerCase(Locale.ROOT)).toList();
+        try {
+            return (RowWriter) writerClass.getConstructor(Path.class, List.class, List.class, long.class, String.class)
+                    .newInstance(file, names, types, rowGroupSize, compression);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the schema of an export as a JSON array of {@code name} and
+     * {@code type} objects.
+     *
+     * @param file    schema file
+     * @param columns exported columns
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeSchema(Path file, List<Column> columns) throws IOException {
+        try (val writer = new RecordWriter(file)) {
+            writer.writeJson(columns.stream()
+                    .map(c -> Map.of("name", c.name(), "type", c.type().name().toLowerCase(Locale.ROOT)))
+                    .toList());
+        }
+    }
+
+    /**
+     * Extracts the value of a column from a node.
+     *
+     * @param node   the node
+     * @param column the column
+     * @return the value converted to the type of the column, {@code null} if
+     * not available
+     */
+    private static Object getValue(Node node, Column column) {
+        if (column.name().contains(":")) {
+            val value = node.getProperties() != null ? CastUtils.castToMapOfStringSerializable(node.getProperties()).get(column.name()) : null;
+            return convert(value, column, node.getId());
+        }
+        val content = node.getContent();
+        return switch (column.name()) {
+            case "id" -> node.getId();
+            case "name" -> node.getName();
+            case "type" -> node.getNodeType();
+            case "parent-id" -> node.getParentId();
+            case "aspects" -> node.getAspectNames();
+            case "size" -> content != null ? content.getSizeInBytes() : null;
+            case "mimetype" -> content != null ? content.getMimeType() : null;
+            case "encoding" -> content != null ? content.getEncoding() : null;
+            case "created" -> Objects.toString(node.getCreatedAt(), null);
+            case "modified" -> Objects.toString(node.getModifiedAt(), null);
+            case "creator" -> node.getCreatedByUser() != null ? node.getCreatedByUser().getId() : null;
+            case "modifier" -> node.getModifiedByUser() != null ? node.getModifiedByUser().getId() : null;
+            case "path" -> node.getPath() != null ? String.format("%s/%s", node.getPath().getName(), node.getName()) : null;
+            default -> throw new IllegalArgumentException(String.format("Unknown column: %s", column.name()));
+        };
+    }
+
+    /**
+     * Converts a property value to the type of its column. Values that
+     * cannot be converted are logged and exported as {@code null}.
+     *
+     * @param value  the property value
+     * @param column the column
+     * @param nodeId id of the node, for logging
+     * @return the converted value
+     */
+    private static Object convert(Object value, Column column, String nodeId) {
+        if (value == null) {
+            return null;
+        }
+        if (column.type() == ColumnType.LIST) {
+            return value instanceof Collection<?> collection ? collection.stream().map(String::valueOf).toList() : List.of(value.toString());
+        }
+        if (value instanceof Collection<?> collection) {
+            return column.type() == ColumnType.STRING ? String.join(",", collection.stream().map(String::valueOf).toList()) : null;
+        }
+        try {
+            return switch (column.type()) {
+                case LONG -> value instanceof Number number ? number.longValue() : Long.parseLong(value.toString());
+                case DOUBLE -> value instanceof Number number ? number.doubleValue() : Double.parseDouble(value.toString());
+                case BOOLEAN -> value instanceof Boolean bool ? bool : Boolean.parseBoolean(value.toString());
+                case DATETIME -> DateUtils.parseDate(value.toString()).toString();
+                default -> value.toString();
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            log.warn("Cannot convert {} of node {} to {}: {}", column.name(), nodeId, column.type(), value);
+            return null;
+        }
+    }
+
+}
\ No newline at end of file
@@ -22,22 +22,67 @@ import feign.FeignException;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.alfresco.core.model.NodeBodyCreate;
 import org.alfresco.core.model.NodeBodyMove;
 import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.util.Strings;
+import org.saidone.misc.StripedLock;
+import org.saidone.model.alfresco.ContentModel;
 import org.saidone.model.config.ProcessorConfig;
+import org.saidone.utils.BucketUtils;
+import org.saidone.utils.CastUtils;
+import org.saidone.utils.DateUtils;
 import org.springframework.stereotype.Component;
 
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Moves nodes to the configured target parent node.
+ * <p>
+ * Optionally nodes can be spread across bucket subfolders of the target
+ * parent in order to keep destination folders small:
+ * <ul>
+ *   <li>{@code bucket-strategy=date}: subfolders are derived from a date
+ *   property ({@code bucket-property}, default {@code cm:created}) formatted
+ *   with {@code bucket-pattern} (default {@code yyyy/MM/dd})</li>
+ *   <li>{@code bucket-strategy=hash}: subfolders are derived from a hash of
+ *   the node id, {@code bucket-depth} levels (default 2) of
+ *   {@code bucket-width} hex characters each (default 2)</li>
+ * </ul>
+ * Bucket folders are created lazily; concurrent consumers asking for the same
+ * bucket share a single lookup/creation.
+ * <p>
+ * When {@code parent-lock-stripes} is set to a positive number, moves and
+ * folder creations into the same destination parent are serialized through a
+ * striped lock, so that consumers do not compete on the child associations of
+ * the same parent while work on different parents still runs in parallel.
  */
 @Component
 @Slf4j
 public class MoveNodeProcessor extends AbstractNodeProcessor {
 
-    private static String targetParentId = null;
+    private static final String BUCKET_STRATEGY_DATE = "date";
+    private static final String BUCKET_STRATEGY_HASH = "hash";
+
+    /**
+     * Resolved target parent ids keyed by the configured id or path.
+     */
+    private final ConcurrentHashMap<String, String> targetParentIds = new ConcurrentHashMap<>();
+
+    /**
+     * Resolved bucket folders keyed by target parent id and bucket path.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<String>> bucketFolders = new ConcurrentHashMap<>();
+
+    /**
+     * Locks serializing writes per destination parent, {@code null} when disabled.
+     */
+    private volatile StripedLock parentLocks;
 
     /**
      * Moves the node to the target parent defined in the configuration.
@@ -48,29 +93,174 @@ public class MoveNodeProcessor extends AbstractNodeProcessor {
     @Override
     @SneakyThrows
     public void processNode(String nodeId, ProcessorConfig config) {
+        val targetParent = (String) config.getArg("target-parent");
+        if (Strings.isBlank(targetParent)) {
+            log.warn("target-parent must be set");
+            return;
+        }
+        val targetParentId = targetParentIds.computeIfAbsent(targetParent, k -> k.matches("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$") ?
+                k : Objects.requireNonNull(nodesApi.getNode("-root-", null, k, null).getBody()).getEntry().getId());
+        val bucket = getBucket(nodeId, config);
+        if (readOnly) {
+            log.debug("moving node --> {} to --> {}/{}", nodeId, targetParentId, String.join("/", bucket));
+            return;
+        }
+        val locks = getParentLocks(config);
         val moveBody = new NodeBodyMove();
-        if (Strings.isBlank(targetParentId)) {
-            if (config.getArg("target-parent") != null) {
-                targetParentId = (String) config.getArg("target-parent");
-                if (!targetParentId.matches("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$")) {
-                    targetParentId = Objects.requireNonNull(nodesApi.getNode("-root-", null, targetParentId, null).getBody()).getEntry().getId();
+        moveBody.setTargetParentId(resolveBucketFolder(targetParentId, bucket, locks));
+        log.debug("moving node --> {} to --> {}", nodeId, moveBody.getTargetParentId());
+        try {
+            withParentLock(locks, moveBody.getTargetParentId(), () -> nodesApi.moveNode(nodeId, moveBody, null, null));
+        } catch (FeignException e) {
+            if (e.status() == HttpStatus.SC_CONFLICT) {
+                log.warn("a node named {} already exists in destination folder", getNode(nodeId).getName());
+            }
+        }
+    }
+
+    /**
+     * Computes the bucket for the node according to the configured strategy.
+     *
+     * @param nodeId id of the node to move
+     * @param config processor configuration
+     * @return list of bucket folder names, empty when bucketing is disabled or
+     * the bucket cannot be computed
+     */
+    private List<String> getBucket(String nodeId, ProcessorConfig config) {
+        val strategy = (String) config.getArg("bucket-strategy");
+        if (Strings.isBlank(strategy)) {
+            return List.of();
+        }
+        switch (strategy) {
+            case BUCKET_STRATEGY_HASH -> {
+                return BucketUtils.hashBucket(nodeId,
+                        config.getArg("bucket-depth") != null ? (int) config.getArg("bucket-depth") : 2,
+                        config.getArg("bucket-width") != null ? (int) config.getArg("bucket-width") : 2);
+            }
+            case BUCKET_STRATEGY_DATE -> {
+                val property = config.getArg("bucket-property") != null ? (String) config.getArg("bucket-property") : ContentModel.PROP_CREATED;
+                val pattern = config.getArg("bucket-pattern") != null ? (String) config.getArg("bucket-pattern") : "yyyy/MM/dd";
+                val date = getDate(nodeId, property);
+                if (date == null) {
+                    log.warn("property {} not set for node {}, moving to target parent", property, nodeId);
+                    return List.of();
+                }
+                return BucketUtils.dateBucket(date, pattern);
+            }
+            default -> {
+                log.warn("invalid bucket strategy --> {}", strategy);
+                return List.of();
+            }
+        }
+    }
+
+    /**
+     * Reads a date property of the node. Audit dates are taken from the node
+     * entry, any other property is loaded from the node properties.
+     *
+     * @param nodeId   id of the node
+     * @param property prefixed name of the date property
+     * @return the date or {@code null} if not set
+     */
+    private OffsetDateTime getDate(String nodeId, String property) {
+        if (ContentModel.PROP_CREATED.equals(property)) {
+            return getNode(nodeId).getCreatedAt();
+        } else if (ContentModel.PROP_MODIFIED.equals(property)) {
+            return getNode(nodeId).getModifiedAt();
+        }
+        val value = CastUtils.castToMapOfObjectObject(getNode(nodeId, true).getProperties(), String.class, Object.class).get(property);
+        return value != null ? DateUtils.parseDate(value.toString()) : null;
+    }
+
+    /**
+     * Resolves the id of the bucket folder, creating missing levels on demand.
+     *
+     * @param parentId id of the target parent
+     * @param bucket   bucket folder names
+     * @param locks    per parent locks, may be {@code null}
+     * @return id of the innermost bucket folder, or {@code parentId} if the
+     * bucket is empty
+     */
+    private String resolveBucketFolder(String parentId, List<String> bucket, StripedLock locks) {
+        var folderId = parentId;
+        var path = parentId;
+        for (val name : bucket) {
+            path = String.format("%s/%s", path, name);
+            val future = new CompletableFuture<String>();
+            val existing = bucketFolders.putIfAbsent(path, future);
+            if (existing == null) {
+                try {
+                    future.complete(getOrCreateFolder(folderId, name, locks));
+                } catch (Exception e) {
+                    // let the next node retry
+                    bucketFolders.remove(path, future);
+                    future.completeExceptionally(e);
                 }
+                folderId = future.join();
             } else {
-                log.warn("target-parent must be set");
-                return;
+                folderId = existing.join();
             }
         }
-        moveBody.setTargetParentId(targetParentId);
-        log.debug("moving node --> {} to --> {}", nodeId, moveBody.getTargetParentId());
+        return folderId;
+    }
+
+    /**
+     * Looks up a child folder by name and creates it if missing. A conflict on
+     * creation means that somebody else created it meanwhile, so the lookup is
+     * repeated.
+     *
+     * @param parentId id of the parent folder
+     * @param name     name of the child folder
+     * @param locks    per parent locks, may be {@code null}
+     * @return id of the child folder
+     */
+    private String getOrCreateFolder(String parentId, String name, StripedLock locks) {
         try {
-            if (!readOnly) {
-                nodesApi.moveNode(nodeId, moveBody, null, null);
+            return Objects.requireNonNull(nodesApi.getNode(parentId, null, name, null).getBody()).getEntry().getId();
+        } catch (FeignException.NotFound e) {
+            val nodeBodyCreate = new NodeBodyCreate();
+            nodeBodyCreate.setName(name);
+            nodeBodyCreate.setNodeType(ContentModel.TYPE_FOLDER);
+            try {
+                log.debug("creating bucket folder --> {} in --> {}", name, parentId);
+                return Objects.requireNonNull(withParentLock(locks, parentId,
+                        () -> nodesApi.createNode(parentId, nodeBodyCreate, null, null, null, null, null)).getBody()).getEntry().getId();
+            } catch (FeignException.Conflict ce) {
+                return Objects.requireNonNull(nodesApi.getNode(parentId, null, name, null).getBody()).getEntry().getId();
             }
-        } catch (FeignException e) {
-            if (e.status() == HttpStatus.SC_CONFLICT) {
-                log.warn("a node named {} already exists in destination folder", getNode(nodeId).getName());
+        }
+    }
+
+    /**
+     * Returns the per parent locks, creating them on first use when
+     * {@code parent-lock-stripes} is positive.
+     *
+     * @param config processor configuration
+     * @return the striped lock or {@code null} if disabled
+     */
+    private StripedLock getParentLocks(ProcessorConfig config) {
+        if (parentLocks == null && config.getArg("parent-lock-stripes") != null && (int) config.getArg("parent-lock-stripes") > 0) {
+            synchronized (this) {
+                if (parentLocks == null) {
+                    parentLocks = new StripedLock((int) config.getArg("parent-lock-stripes"));
+                    log.info("Serializing writes per parent folder on {} lock stripes", parentLocks.size());
+                }
             }
         }
+        return parentLocks;
+    }
+
+    /**
+     * Runs a write operation on the given parent, holding its lock if enabled.
+     *
+     * @param locks    per parent locks, may be {@code null}
+     * @param parentId id of the parent being written
+     * @param task     write operation
+     * @param <T>      operation result type
+     * @return the operation result
+     */
+    private static <T> T withParentLock(StripedLock locks, String parentId, Supplier<T> task) {
+        return locks != null ? locks.withLock(parentId, task) : task.get();
     }
 
 }
@@ -20,6 +20,7 @@ package org.saidone.processors;
 
 import org.saidone.model.config.ProcessorConfig;
 
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -33,7 +34,20 @@ public interface NodeProcessor {
      * @param config processor configuration
      * @return future representing the asynchronous task
      */
-    CompletableFuture<Void> process(ProcessorConfig config);
+    default CompletableFuture<Void> process(ProcessorConfig config) {
+        return process(config, false);
+    }
+
+    /**
+     * Start processing asynchronously the nodes of a lane, see
+     * {@link org.saidone.service.SizeLaneService}.
+     *
+     * @param config     processor configuration
+     * @param largeFiles whether to take the nodes of the large file lane,
+     *                   falling back to the regular one when it is empty
+     * @return future representing the asynchronous task
+     */
+    CompletableFuture<Void> process(ProcessorConfig config, boolean largeFiles);
 
     /**
      * Process a single node.
@@ -43,4 +57,27 @@ public interface NodeProcessor {
      */
     void processNode(String nodeId, ProcessorConfig config) throws Exception;
 
+    /**
+     * Called by each consumer, on its own thread, once there are no more nodes
+     * to process. Processors holding per-consumer resources release them here.
+     *
+     * @param config processor configuration
+     */
+    default void afterProcess(ProcessorConfig config) throws Exception {
+    }
+
+    /**
+     * Declares the node fields, beyond the id, that the processor can take
+     * from the collector instead of fetching them from Alfresco (e.g.
+     * {@code path} and {@code parentId}, see
+     * {@link org.saidone.service.NodeHintService}). Collectors request from
+     * Alfresco only the fields they need themselves plus these ones.
+     *
+     * @param config processor configuration
+     * @return the field names, empty by default
+     */
+    default Set<String> getRequiredFields(ProcessorConfig config) {
+        return Set.of();
+    }
+
 }
@@ -0,0 +1,527 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.service;
+
+import feign.Request;
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.saidone.component.BaseComponent;
+import org.saidone.misc.DiskWriter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Streams node content from Alfresco straight to the local filesystem.
+ * <p>
+ * The generated REST client decodes content into a byte array, so the whole
+ * document ends up on the heap. This service issues the same content requests
+ * with the JDK {@link HttpClient} and copies the response body to disk through
+ * a fixed-size per-thread buffer, so memory usage does not depend on the size
+ * of the content.
+ * <p>
+ * Requests are authenticated by the {@link RequestInterceptor} beans of the
+ * REST client, so that they carry the same credentials, tickets or tokens as
+ * the REST API calls.
+ */
+@Service
+@Slf4j
+public class ContentService extends BaseComponent {
+
+    /**
+     * Size of the per-thread transfer buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Suffix of the temporary file used while a download is in progress.
+     */
+    public static final String PART_FILE_SUFFIX = ".part";
+
+    /**
+     * Suffix of the file tracking the chunks completed by a ranged download.
+     */
+    public static final String PROGRESS_FILE_SUFFIX = ".part.chunks";
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    @Value("${content.service.url}")
+    private String contentServiceUrl;
+
+    @Value("${content.service.path:/alfresco/api/-default-/public/alfresco/versions/1}")
+    private String contentServicePath;
+
+    /**
+     * Interceptors of the REST client, adding its authentication to each
+     * request.
+     */
+    @Autowired
+    private ObjectProvider<RequestInterceptor> requestInterceptors;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(30))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    @Value("${application.range-threads:16}")
+    private int rangeThreads;
+
+    /**
+     * Executor fetching the chunks of ranged downloads, concurrency is also
+     * bounded per download.
+     */
+    private ExecutorService chunksExecutor;
+
+    /**
+     * Raised when the server answers a ranged request with the whole content.
+     */
+    private static class RangeNotSupportedException extends IOException {
+
+        RangeNotSupportedException(URI uri) {
+            super(String.format("GET %s does not support ranged requests", uri));
+        }
+
+    }
+
+    /**
+     * Creates the executor of ranged downloads.
+     */
+    @PostConstruct
+    public void init() {
+        chunksExecutor = Executors.newFixedThreadPool(Math.max(1, rangeThreads));
+    }
+
+    /**
+     * Stops the executor of ranged downloads.
+     */
+    @PreDestroy
+    public void shutdownExecutor() {
+        chunksExecutor.shutdownNow();
+    }
+
+    /**
+     * Downloads the content of a node, or of one of its versions, to the given
+     * file.
+     * <p>
+     * Data is first written to a {@code .part} file that is moved to its final
+     * name only when the transfer completes, so that an interrupted download
+     * never leaves a truncated file behind. Empty content does not create any
+     * file.
+     *
+     * @param nodeId    id of the node
+     * @param versionId id of the version, or {@code null} for the current content
+     * @param target    destination file
+     * @return number of bytes written
+     * @throws IOException if the request fails or the file cannot be written
+     */
+    public long download(String nodeId, String versionId, Path target) throws IOException {
+        val partFile = target.resolveSibling(String.format("%s%s", target.getFileName(), PART_FILE_SUFFIX));
+        long size;
+        try (val out = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            size = transfer(nodeId, versionId, out);
+        } catch (IOException e) {
+            Files.deleteIfExists(partFile);
+            throw e;
+        }
+        if (size == 0) {
+            Files.deleteIfExists(partFile);
+        } else {
+            Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return size;
+    }
+
+    /**
+     * Downloads the content of a node, or of one of its versions, handing
+     * the disk writes over to a {@link DiskWriter}.
+     * <p>
+     * The calling thread only reads from the network into buffers of the
+     * writer, which are written to the {@code .part} file by the writer
+     * threads. The file is moved to its final name once every buffer has been
+     * written. Empty content does not create any file.
+     *
+     * @param nodeId     id of the node
+     * @param versionId  id of the version, or {@code null} for the current content
+     * @param target     destination file
+     * @param diskWriter writer performing the disk writes
+     * @return number of bytes written
+     * @throws IOException if the request fails or the file cannot be written
+     */
+    public long download(String nodeId, String versionId, Path target, DiskWriter diskWriter) throws IOException {
+        val partFile = target.resolveSibling(String.format("%s%s", target.getFileName(), PART_FILE_SUFFIX));
+        var size = 0L;
+        try (val out = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             val in = Channels.newChannel(get(contentUri(nodeId, versionId), null, null).body())) {
+            val pending = new ArrayDeque<CompletableFuture<Void>>();
+            try {
+                var eof = false;
+                while (!eof) {
+                    val buffer = diskWriter.acquire();
+                    // the buffer goes back to the pool unless handed over to the writer
+                    var submitted = false;
+                    try {
+                        // fill the whole buffer to keep writes large
+                        while (buffer.hasRemaining()) {
+                            if (in.read(buffer) == -1) {
+                                eof = true;
+                                break;
+                            }
+                        }
+                        buffer.flip();
+                        if (buffer.hasRemaining()) {
+                            val position = size;
+                            size += buffer.remaining();
+                            pending.add(diskWriter.write(out, buffer, position));
+                            submitted = true;
+                        }
+                    } finally {
+                        if (!submitted) {
+                            diskWriter.release(buffer);
+                        }
+                    }
+                    // surface write failures early
+                    while (!pending.isEmpty() && pending.peek().isDone()) {
+                        pending.poll().join();
+                    }
+                }
+            } finally {
+                // never close the channel while writes are still pending
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+            }
+            for (val write : pending) {
+                write.join();
+            }
+        } catch (CompletionException e) {
+            Files.deleteIfExists(partFile);
+            throw e.getCause() instanceof UncheckedIOException u ? u.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Files.deleteIfExists(partFile);
+            throw new IOException(e);
+        } catch (IOException e) {
+            Files.deleteIfExists(partFile);
+            throw e;
+        }
+        if (size == 0) {
+            Files.deleteIfExists(partFile);
+        } else {
+            Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return size;
+    }
+
+    /**
+     * Streams the content of a node, or of one of its versions, to the given
+     * channel. The channel is left open.
+     *
+     * @param nodeId    id of the node
+     * @param versionId id of the version, or {@code null} for the current content
+     * @param out       destination channel
+     * @return number of bytes written
+     * @throws IOException if the request fails or the channel cannot be written
+     */
+    public long transfer(String nodeId, String versionId, WritableByteChannel out) throws IOException {
+        try (val in = Channels.newChannel(get(contentUri(nodeId, versionId), null, null).body())) {
+            val buffer = BUFFER.get();
+            var size = 0L;
+            buffer.clear();
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    size += out.write(buffer);
+                }
+                buffer.clear();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Downloads large content in parallel chunks fetched with HTTP range
+     * requests.
+     * <p>
+     * The {@code .part} file is preallocated to the full size and each chunk is
+     * written at its own position. Completed chunks are recorded in a
+     * {@code .part.chunks} file, so that a download interrupted by a failure
+     * or by the end of the process resumes from the chunks still missing when
+     * it is attempted again for the same content: the {@code ETag} (or
+     * {@code Last-Modified} date) of the content is recorded along with its
+     * size and sent as {@code If-Range} with every chunk request, so that
+     * chunks of different contents are never stitched together. Content
+     * without a validator is always downloaded from scratch. Falls back to a
+     * plain download when the server does not honour range requests or the
+     * content changes during the download.
+     *
+     * @param nodeId      id of the node
+     * @param versionId   id of the version, or {@code null} for the current content
+     * @param target      destination file
+     * @param size        size of the content in bytes
+     * @param chunkSize   size of each chunk in bytes
+     * @param parallelism maximum number of chunks fetched at the same time
+     * @return number of bytes written
+     * @throws IOException if the content cannot be retrieved or written
+     */
+    public long download(String nodeId, String versionId, Path target, long size, long chunkSize, int parallelism) throws IOException {
+        val uri = contentUri(nodeId, versionId);
+        val partFile = target.resolveSibling(String.format("%s%s", target.getFileName(), PART_FILE_SUFFIX));
+        val progressFile = target.resolveSibling(String.format("%s%s", target.getFileName(), PROGRESS_FILE_SUFFIX));
+        val chunks = (int) ((size + chunkSize - 1) / chunkSize);
+        val validator = getValidator(uri);
+        val completed = loadProgress(progressFile, partFile, size, validator);
+        if (completed.isEmpty()) {
+            Files.deleteIfExists(partFile);
+            Files.writeString(progressFile, String.format("%d%n%s%n", size, validator));
+        } else {
+            log.info("Resuming download of {} with {}/{} chunks completed", target, completed.size(), chunks);
+        }
+        try (val channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             val progress = Files.newBufferedWriter(progressFile, StandardOpenOption.APPEND)) {
+            // preallocate
+            if (channel.size() < size) {
+                channel.write(ByteBuffer.wrap(new byte[]{0}), size - 1);
+            }
+            val permits = new Semaphore(Math.max(1, parallelism));
+            val futures = new ArrayList<CompletableFuture<Void>>();
+            for (var i = 0; i < chunks; i++) {
+                if (completed.contains(i)) {
+                    continue;
+                }
+                val chunk = i;
+                val start = chunk * chunkSize;
+                val end = Math.min(size, start + chunkSize) - 1;
+                permits.acquire();
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        transferRange(uri, channel, start, end, validator);
+                        synchronized (progress) {
+                            progress.write(String.format("%d%n", chunk));
+                            progress.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        permits.release();
+                    }
+                }, chunksExecutor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            channel.force(true);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException u && u.getCause() instanceof RangeNotSupportedException) {
+                log.warn(u.getCause().getMessage());
+                Files.deleteIfExists(progressFile);
+                Files.deleteIfExists(partFile);
+                return download(nodeId, versionId, target);
+            }
+            throw e.getCause() instanceof UncheckedIOException u ? u.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(progressFile);
+        return size;
+    }
+
+    /**
+     * Reads the chunks completed by a previous attempt.
+     *
+     * @param progressFile file tracking the completed chunks
+     * @param partFile     partially downloaded file
+     * @param size         expected size of the content
+     * @param validator    validator of the content, empty if none
+     * @return indexes of the completed chunks, empty if there is nothing to
+     * resume or the previous attempt was for a different content
+     * @throws IOException if the progress file cannot be read
+     */
+    private static Set<Integer> loadProgress(Path progressFile, Path partFile, long size, String validator) throws IOException {
+        val completed = new HashSet<Integer>();
+        if (validator.isEmpty() || !Files.exists(progressFile) || !Files.exists(partFile) || Files.size(partFile) != size) {
+            return completed;
+        }
+        val lines = Files.readAllLines(progressFile);
+        if (lines.size() < 2 || !String.valueOf(size).equals(lines.get(0).trim()) || !validator.equals(lines.get(1).trim())) {
+            return completed;
+        }
+        for (val line : lines.subList(2, lines.size())) {
+            if (!line.isBlank()) {
+                completed.add(Integer.parseInt(line.trim()));
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Returns the validator of the current content: its strong {@code ETag}
+     * if any, otherwise its {@code Last-Modified} date.
+     *
+     * @param uri content URI
+     * @return the validator, empty if the server provides none
+     * @throws IOException if the request fails
+     */
+    private String getValidator(URI uri) throws IOException {
+        val response = get(uri, "bytes=0-0", null);
+        response.body().close();
+        val etag = response.headers().firstValue("ETag").filter(e -> !e.startsWith("W/"));
+        return etag.or(() -> response.headers().firstValue("Last-Modified")).orElse("");
+    }
+
+    /**
+     * Fetches a byte range and writes it at the same position of the file.
+     *
+     * @param uri       content URI
+     * @param channel   destination file channel
+     * @param start     first byte of the range
+     * @param end       last byte of the range, inclusive
+     * @param validator validator the content must still match, empty if none
+     * @throws IOException if the range cannot be retrieved or written
+     */
+    private void transferRange(URI uri, FileChannel channel, long start, long end, String validator) throws IOException {
+        val response = get(uri, String.format("bytes=%d-%d", start, end), validator.isEmpty() ? null : validator);
+        if (response.statusCode() != 206) {
+            response.body().close();
+            throw new RangeNotSupportedException(uri);
+        }
+        try (val in = Channels.newChannel(response.body())) {
+            val buffer = BUFFER.get();
+            var position = start;
+            buffer.clear();
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                buffer.clear();
+            }
+            if (position != end + 1) {
+                throw new IOException(String.format("GET %s range %d-%d returned %d bytes", uri, start, end, position - start));
+            }
+        }
+    }
+
+    /**
+     * Builds the content URI of a node or of one of its versions.
+     *
+     * @param nodeId    id of the node
+     * @param versionId id of the version, or {@code null}
+     * @return the content URI
+     */
+    private URI contentUri(String nodeId, String versionId) {
+        return versionId == null ?
+                URI.create(String.format("%s%s/nodes/%s/content", contentServiceUrl, contentServicePath, nodeId)) :
+                URI.create(String.format("%s%s/nodes/%s/versions/%s/content", contentServiceUrl, contentServicePath, nodeId, versionId));
+    }
+
+    /**
+     * Appends the query parameters added by the interceptors, such as an
+     * authentication ticket, to a request URI.
+     *
+     * @param uri      request URI
+     * @param template request template populated by the interceptors
+     * @return the URI with the additional query parameters
+     */
+    private static URI withQueries(URI uri, RequestTemplate template) {
+        if (template.queries().isEmpty()) {
+            return uri;
+        }
+        val query = new StringBuilder(uri.toString()).append(uri.getRawQuery() == null ? '?' : '&');
+        var first = true;
+        for (val entry : template.queries().entrySet()) {
+            for (val value : entry.getValue()) {
+                if (!first) {
+                    query.append('&');
+                }
+                first = false;
+                query.append(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8))
+                        .append('=')
+                        .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+            }
+        }
+        return URI.create(query.toString());
+    }
+
+    /**
+     * Issues an authenticated GET request and returns the streamed response.
+     *
+     * @param uri     request URI
+     * @param range   value of the {@code Range} header, or {@code null}
+     * @param ifRange value of the {@code If-Range} header, or {@code null}
+     * @return response whose body is still to be consumed
+     * @throws IOException if the request fails or returns an error status
+     */
+    private HttpResponse<InputStream> get(URI uri, String range, String ifRange) throws IOException {
+        // let the interceptors of the REST client authenticate the request
+        val template = new RequestTemplate();
+        template.method(Request.HttpMethod.GET);
+        requestInterceptors.orderedStream().forEach(interceptor -> interceptor.apply(template));
+        val builder = HttpRequest.newBuilder(withQueries(uri, template)).GET();
+        template.headers().forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+        if (range != null) {
+            builder.header("Range", range);
+        }
+        if (ifRange != null) {
+            builder.header("If-Range", ifRange);
+        }
+        try {
+            val response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200 && response.statusCode() != 206) {
+                response.body().close();
+                throw new IOException(String.format("GET %s returned status %d", uri, response.statusCode()));
+            }
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,584 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.alfresco.core.handler.NodesApi;
+import org.alfresco.core.model.ContentInfo;
+import org.alfresco.core.model.Node;
+import org.alfresco.core.model.UserInfo;
+import org.saidone.component.BaseComponent;
+import org.saidone.model.alfresco.ContentModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Reads node metadata straight from the Alfresco database instead of the
+ * REST API, for jobs that only need type, aspects and properties.
+ * <p>
+ * Enabled with {@code application.node-reader.type} set to {@code db}, and
+ * only for read-only runs ({@code application.read-only}): nodes are read
+ * once and kept until processed, so updates made in the meantime, e.g. by an
+ * earlier step of a {@code ChainingNodeProcessor}, would not be seen. When a
+ * node is requested, the ids waiting at the head of the queue are loaded along
+ * with it, {@code application.node-reader.batch-size} at a time, so that most
+ * requests are served from memory and the database is asked once per batch.
+ * Loaded nodes are kept until they have been processed.
+ * <p>
+ * Only the id, name, type, aspects, properties, audit fields, primary parent
+ * and content info of the nodes are filled in. Properties are decoded from the
+ * typed value columns of {@code alf_node_properties}; values persisted as
+ * serialized Java objects cannot be decoded and are left out. The display
+ * names of the creator and modifier are read from their person nodes,
+ * defaulting to the user id. The database knows nothing of the type
+ * hierarchy, so whether a type is a folder or a file is asked to the REST API
+ * for the first node of each type and remembered for the rest of the run.
+ */
+@Service
+@Slf4j
+public class DbNodeReaderService extends BaseComponent {
+
+    private static final Set<String> SUPPORTED_INCLUDES = Set.of("properties", "aspectNames");
+
+    private static final Set<String> FOLDER_TYPES = Set.of(ContentModel.TYPE_FOLDER, ContentModel.TYPE_SYSTEMFOLDER, "st:site", "st:sites");
+
+    private static final String SQL_QNAMES = """
+        SELECT q.id, q.local_name, ns.uri
+        FROM alf_qname q
+        JOIN alf_namespace ns ON q.ns_id = ns.id
+        """;
+
+    private static final String SQL_NODES = """
+        SELECT n.id, n.uuid, n.type_qname_id, n.audit_creator, n.audit_created, n.audit_modifier, n.audit_modified
+        FROM alf_node n
+        JOIN alf_store s ON n.store_id = s.id
+        WHERE n.uuid = ANY(?) AND s.protocol = 'workspace' AND s.identifier = 'SpacesStore'
+        """;
+
+    private static final String SQL_ASPECTS = """
+        SELECT node_id, qname_id
+        FROM alf_node_aspects
+        WHERE node_id = ANY(?)
+        """;
+
+    private static final String SQL_PROPERTIES = """
+        SELECT node_id, qname_id, actual_type_n, persisted_type_n, boolean_value, long_value, float_value, double_value, string_value, list_index
+        FROM alf_node_properties
+        WHERE node_id = ANY(?)
+        ORDER BY node_id, qname_id, list_index
+        """;
+
+    private static final String SQL_PARENTS = """
+        SELECT c.child_node_id, p.uuid
+        FROM alf_child_assoc c
+        JOIN alf_node p ON c.parent_node_id = p.id
+        WHERE c.child_node_id = ANY(?) AND c.is_primary = true
+        """;
+
+    private static final String SQL_PERSONS = """
+        SELECT u.string_value AS user_name, f.string_value AS first_name, l.string_value AS last_name
+        FROM alf_node_properties u
+        JOIN alf_node n ON u.node_id = n.id
+        LEFT JOIN alf_node_properties f ON f.node_id = u.node_id AND f.qname_id = ?
+        LEFT JOIN alf_node_properties l ON l.node_id = u.node_id AND l.qname_id = ?
+        WHERE u.qname_id = ? AND u.string_value = ANY(?) AND n.type_qname_id = ?
+        """;
+
+    private static final String SQL_CONTENT = """
+        SELECT cd.id, cu.content_size, m.mimetype_str, e.encoding_str
+        FROM alf_content_data cd
+        LEFT JOIN alf_content_url cu ON cd.content_url_id = cu.id
+        LEFT JOIN alf_mimetype m ON cd.content_mimetype_id = m.id
+        LEFT JOIN alf_encoding e ON cd.content_encoding_id = e.id
+        WHERE cd.id = ANY(?)
+        """;
+
+    /* value types of alf_node_properties, as in org.alfresco.repo.domain.node.NodePropertyValue */
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_BOOLEAN = 1;
+    private static final int TYPE_INTEGER = 2;
+    private static final int TYPE_LONG = 3;
+    private static final int TYPE_FLOAT = 4;
+    private static final int TYPE_DOUBLE = 5;
+    private static final int TYPE_STRING = 6;
+    private static final int TYPE_NODEREF = 12;
+    private static final int TYPE_QNAME = 15;
+    private static final int TYPE_CONTENT_DATA_ID = 21;
+
+    @Autowired
+    private LinkedBlockingQueue<String> queue;
+
+    @Autowired
+    private NodesApi nodesApi;
+
+    @Value("${application.node-reader.type:rest}")
+    private String type;
+
+    @Value("${application.read-only:true}")
+    private boolean readOnly;
+
+    @Value("${application.node-reader.db-url:}")
+    private String dbUrl;
+
+    @Value("${application.node-reader.db-user:}")
+    private String dbUser;
+
+    @Value("${application.node-reader.db-password:}")
+    private String dbPassword;
+
+    @Value("${application.node-reader.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Loaded nodes, the oldest dropped beyond ten batches.
+     */
+    private final Map<String, Node> nodes = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+            return size() > 10 * batchSize;
+        }
+    });
+
+    /**
+     * Whether a node type is a folder or a file.
+     *
+     * @param folder whether the type is {@code cm:folder} or a subtype
+     * @param file   whether the type is {@code cm:content} or a subtype
+     */
+    private record TypeInfo(boolean folder, boolean file) {
+    }
+
+    /**
+     * Node types resolved so far.
+     */
+    private final Map<String, TypeInfo> types = new ConcurrentHashMap<>();
+
+    /**
+     * Display names of the users resolved so far, by user id.
+     */
+    private final Map<String, String> displayNames = new ConcurrentHashMap<>();
+
+    private Connection connection;
+    private Map<Long, String> qNames;
+
+    /**
+     * @return whether nodes are to be read from the database
+     */
+    public boolean isEnabled() {
+        return "db".equals(type) && readOnly;
+    }
+
+    /**
+     * @param include include flags requested for a node
+     * @return whether the reader provides everything requested
+     */
+    public boolean supports(List<String> include) {
+        return include == null || SUPPORTED_INCLUDES.containsAll(include);
+    }
+
+    /**
+     * Returns a copy of a node, loading it from the database together with
+     * the ids waiting at the head of the queue if it has not been loaded yet.
+     *
+     * @param nodeId id of the node
+     * @return the node, or {@code null} if it is not in the database
+     * @throws SQLException if the database cannot be read
+     */
+    public Node getNode(String nodeId) throws SQLException {
+        val node = nodes.get(nodeId);
+        if (node != null) {
+            return copy(node);
+        }
+        synchronized (this) {
+            if (!nodes.containsKey(nodeId)) {
+                val ids = new LinkedHashSet<String>();
+                ids.add(nodeId);
+                for (val queued : queue) {
+                    if (ids.size() >= batchSize) {
+                        break;
+                    }
+                    if (!nodes.containsKey(queued)) {
+                        ids.add(queued);
+                    }
+                }
+                try {
+                    nodes.putAll(load(ids));
+                } catch (SQLException e) {
+                    // reconnect on next use
+                    close();
+                    connection = null;
+                    throw e;
+                }
+            }
+        }
+        val loaded = nodes.get(nodeId);
+        return loaded != null ? copy(loaded) : null;
+    }
+
+    /**
+     * Copies a node, so that callers can change it without affecting the
+     * loaded one.
+     *
+     * @param node the node
+     * @return the copy
+     */
+    @SuppressWarnings("unchecked")
+    private static Node copy(Node node) {
+        val properties = new HashMap<String, Object>();
+        ((Map<String, Object>) node.getProperties()).forEach((k, v) -> properties.put(k, v instanceof List<?> l ? new ArrayList<>(l) : v));
+        val content = node.getContent();
+        return new Node()
+                .id(node.getId())
+                .name(node.getName())
+                .nodeType(node.getNodeType())
+                .isFolder(node.isIsFolder())
+                .isFile(node.isIsFile())
+                .createdByUser(new UserInfo().id(node.getCreatedByUser().getId()).displayName(node.getCreatedByUser().getDisplayName()))
+                .createdAt(node.getCreatedAt())
+                .modifiedByUser(new UserInfo().id(node.getModifiedByUser().getId()).displayName(node.getModifiedByUser().getDisplayName()))
+                .modifiedAt(node.getModifiedAt())
+                .parentId(node.getParentId())
+                .aspectNames(new ArrayList<>(node.getAspectNames()))
+                .properties(properties)
+                .content(content != null ? new ContentInfo()
+                        .sizeInBytes(content.getSizeInBytes())
+                        .mimeType(content.getMimeType())
+                        .encoding(content.getEncoding()) : null);
+    }
+
+    /**
+     * Drops a node once it has been processed.
+     *
+     * @param nodeId id of the node
+     */
+    public void evict(String nodeId) {
+        nodes.remove(nodeId);
+    }
+
+    /**
+     * Loads a batch of nodes.
+     *
+     * @param uuids ids of the nodes
+     * @return the nodes found, by id
+     * @throws SQLException if the database cannot be read
+     */
+    private Map<String, Node> load(Set<String> uuids) throws SQLException {
+        val conn = getConnection();
+        val nodesById = new LinkedHashMap<Long, Node>();
+        try (val pstmt = conn.prepareStatement(SQL_NODES)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", uuids.toArray()));
+            try (val rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    nodesById.put(rs.getLong("id"), new Node()
+                            .id(rs.getString("uuid"))
+                            .nodeType(getQName(rs.getLong("type_qname_id")))
+                            .createdByUser(new UserInfo().id(rs.getString("audit_creator")))
+                            .createdAt(parseDate(rs.getString("audit_created")))
+                            .modifiedByUser(new UserInfo().id(rs.getString("audit_modifier")))
+                            .modifiedAt(parseDate(rs.getString("audit_modified")))
+                            .aspectNames(new ArrayList<>())
+                            .properties(new HashMap<String, Object>()));
+                }
+            }
+        }
+        if (nodesById.isEmpty()) {
+            return Map.of();
+        }
+        val ids = conn.createArrayOf("bigint", nodesById.keySet().toArray());
+        try (val pstmt = conn.prepareStatement(SQL_ASPECTS)) {
+            pstmt.setArray(1, ids);
+            try (val rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    nodesById.get(rs.getLong("node_id")).addAspectNamesItem(getQName(rs.getLong("qname_id")));
+                }
+            }
+        }
+        try (val pstmt = conn.prepareStatement(SQL_PARENTS)) {
+            pstmt.setArray(1, ids);
+            try (val rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    nodesById.get(rs.getLong("child_node_id")).parentId(rs.getString("uuid"));
+                }
+            }
+        }
+        val contentDataIds = new HashMap<Long, Node>();
+        try (val pstmt = conn.prepareStatement(SQL_PROPERTIES)) {
+            pstmt.setArray(1, ids);
+            try (val rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    val node = nodesById.get(rs.getLong("node_id"));
+                    val name = getQName(rs.getLong("qname_id"));
+                    val actualType = rs.getInt("actual_type_n");
+                    if (actualType == TYPE_CONTENT_DATA_ID) {
+                        if (ContentModel.PROP_CONTENT.equals(name)) {
+                            contentDataIds.put(rs.getLong("long_value"), node);
+                        }
+                        continue;
+                    }
+                    val value = getValue(rs, actualType);
+                    if (ContentModel.PROP_NAME.equals(name)) {
+                        node.name((String) value);
+                        continue;
+                    }
+                    if (name.startsWith("sys:")) {
+                        continue;
+                    }
+                    @SuppressWarnings("unchecked")
+                    val properties = (Map<String, Object>) node.getProperties();
+                    if (rs.getInt("list_index") >= 0) {
+                        @SuppressWarnings("unchecked")
+                        val values = (List<Object>) properties.computeIfAbsent(name, k -> new ArrayList<>());
+                        values.add(value);
+                    } else {
+                        properties.putIfAbsent(name, value);
+                    }
+                }
+            }
+        }
+        if (!contentDataIds.isEmpty()) {
+            try (val pstmt = conn.prepareStatement(SQL_CONTENT)) {
+                pstmt.setArray(1, conn.createArrayOf("bigint", contentDataIds.keySet().toArray()));
+                try (val rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        contentDataIds.get(rs.getLong("id")).content(new ContentInfo()
+                                .sizeInBytes(rs.getLong("content_size"))
+                                .mimeType(rs.getString("mimetype_str"))
+                                .encoding(rs.getString("encoding_str")));
+                    }
+                }
+            }
+        }
+        setDisplayNames(conn, nodesById.values());
+        for (val node : nodesById.values()) {
+            val typeInfo = getTypeInfo(node);
+            node.isFolder(typeInfo.folder()).isFile(typeInfo.file());
+        }
+        log.debug("Loaded {} of {} nodes from the database", nodesById.size(), uuids.size());
+        return nodesById.values().stream().collect(Collectors.toMap(Node::getId, n -> n));
+    }
+
+    /**
+     * Fills in the display names of the creators and modifiers of the nodes,
+     * looking up the person nodes of the users not seen yet. As with the REST
+     * API, the display name is made of the first and last name of the user,
+     * or is the user id if there is no such person.
+     *
+     * @param conn  database connection
+     * @param nodes loaded nodes
+     * @throws SQLException if the persons cannot be read
+     */
+    private void setDisplayNames(Connection conn, Collection<Node> nodes) throws SQLException {
+        val userNames = new HashSet<String>();
+        for (val node : nodes) {
+            userNames.add(node.getCreatedByUser().getId());
+            userNames.add(node.getModifiedByUser().getId());
+        }
+        userNames.remove(null);
+        userNames.removeAll(displayNames.keySet());
+        if (!userNames.isEmpty()) {
+            try (val pstmt = conn.prepareStatement(SQL_PERSONS)) {
+                pstmt.setLong(1, getQNameId(ContentModel.PROP_FIRST_NAME));
+                pstmt.setLong(2, getQNameId(ContentModel.PROP_LAST_NAME));
+                pstmt.setLong(3, getQNameId(ContentModel.PROP_USER_NAME));
+                pstmt.setArray(4, conn.createArrayOf("varchar", userNames.toArray()));
+                pstmt.setLong(5, getQNameId(ContentModel.TYPE_PERSON));
+                try (val rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        val displayName = String.format("%s %s",
+                                Objects.toString(rs.getString("first_name"), ""),
+                                Objects.toString(rs.getString("last_name"), "")).trim();
+                        displayNames.put(rs.getString("user_name"), displayName.isEmpty() ? rs.getString("user_name") : displayName);
+                    }
+                }
+            }
+            userNames.forEach(userName -> displayNames.putIfAbsent(userName, userName));
+        }
+        for (val node : nodes) {
+            node.getCreatedByUser().displayName(displayNames.get(node.getCreatedByUser().getId()));
+            node.getModifiedByUser().displayName(displayNames.get(node.getModifiedByUser().getId()));
+        }
+    }
+
+    /**
+     * Returns whether the type of a node is a folder or a file, asking the
+     * REST API for the node the first time its type is met, since the
+     * database does not know the type hierarchy. Should the REST API fail,
+     * the type is guessed for this node only: a folder if it is one of the
+     * {@code cm:folder} types of the repository, a file if it has content.
+     *
+     * @param node a loaded node
+     * @return the type info
+     */
+    private TypeInfo getTypeInfo(Node node) {
+        var typeInfo = types.get(node.getNodeType());
+        if (typeInfo == null) {
+            try {
+                val entry = Objects.requireNonNull(nodesApi.getNode(node.getId(), null, null, null).getBody()).getEntry();
+                typeInfo = new TypeInfo(Boolean.TRUE.equals(entry.isIsFolder()), Boolean.TRUE.equals(entry.isIsFile()));
+                types.put(node.getNodeType(), typeInfo);
+                log.debug("Type {} resolved through node {}: {}", node.getNodeType(), node.getId(), typeInfo);
+            } catch (Exception e) {
+                log.trace(e.getMessage(), e);
+                log.warn("Cannot resolve type {} of node {}: {}", node.getNodeType(), node.getId(), e.getMessage());
+                typeInfo = new TypeInfo(FOLDER_TYPES.contains(node.getNodeType()), node.getContent() != null);
+            }
+        }
+        return typeInfo;
+    }
+
+    /**
+     * Decodes the value of a property row.
+     *
+     * @param rs         result set positioned on the row
+     * @param actualType declared type of the value
+     * @return the value, or {@code null} if it cannot be decoded
+     * @throws SQLException if a column cannot be read
+     */
+    private Object getValue(ResultSet rs, int actualType) throws SQLException {
+        val value = switch (rs.getInt("persisted_type_n")) {
+            case TYPE_NULL -> null;
+            case TYPE_BOOLEAN -> rs.getBoolean("boolean_value");
+            case TYPE_INTEGER, TYPE_LONG -> rs.getLong("long_value");
+            case TYPE_FLOAT -> rs.getFloat("float_value");
+            case TYPE_DOUBLE -> rs.getDouble("double_value");
+            case TYPE_STRING -> rs.getString("string_value");
+            default -> null;
+        };
+        if (value == null) {
+            return null;
+        }
+        return switch (actualType) {
+            case TYPE_INTEGER -> ((Long) value).intValue();
+            case TYPE_NODEREF -> value.toString().substring(value.toString().lastIndexOf('/') + 1);
+            case TYPE_QNAME -> getQName((Long) value);
+            default -> value;
+        };
+    }
+
+    /**
+     * Returns the connection to the database, opening it and loading the
+     * qualified names on first use.
+     *
+     * @return the connection
+     * @throws SQLException if the connection cannot be opened
+     */
+    private Connection getConnection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+            connection.setReadOnly(true);
+            connection.setAutoCommit(true);
+            loadQNames();
+        }
+        return connection;
+    }
+
+    /**
+     * Returns the prefixed name of a qualified name, reloading the names if
+     * it has been created after they were loaded.
+     *
+     * @param id qname id
+     * @return the name, e.g. {@code cm:content}
+     * @throws SQLException if the names cannot be loaded
+     */
+    private String getQName(long id) throws SQLException {
+        if (!qNames.containsKey(id)) {
+            loadQNames();
+        }
+        return qNames.getOrDefault(id, String.valueOf(id));
+    }
+
+    /**
+     * Returns the id of a qualified name.
+     *
+     * @param name prefixed name, e.g. {@code cm:userName}
+     * @return the id, or {@code -1} if the name is not used in the repository
+     */
+    private long getQNameId(String name) {
+        return qNames.entrySet().stream()
+                .filter(e -> e.getValue().equals(name))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(-1L);
+    }
+
+    /**
+     * Loads all the qualified names of the repository.
+     *
+     * @throws SQLException if the query fails
+     */
+    private void loadQNames() throws SQLException {
+        val prefixes = ContentModel.NAMESPACES.entrySet().stream().collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
+        val names = new HashMap<Long, String>();
+        try (val stmt = connection.createStatement(); val rs = stmt.executeQuery(SQL_QNAMES)) {
+            while (rs.next()) {
+                val prefix = prefixes.get(rs.getString("uri"));
+                names.put(rs.getLong("id"), prefix != null
+                        ? String.format("%s:%s", prefix, rs.getString("local_name"))
+                        : String.format("{%s}%s", rs.getString("uri"), rs.getString("local_name")));
+            }
+        }
+        qNames = names;
+    }
+
+    /**
+     * @param date audit date as stored by Alfresco
+     * @return the parsed date, or {@code null}
+     */
+    private static OffsetDateTime parseDate(String date) {
+        return date != null ? OffsetDateTime.parse(date) : null;
+    }
+
+    /**
+     * Closes the database connection.
+     */
+    @PreDestroy
+    public void close() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.trace(e.getMessage(), e);
+            }
+        }
+    }
+
+}
\ No newline at end of file
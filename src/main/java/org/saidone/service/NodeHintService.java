@@ -0,0 +1,80 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.service;
+
+import org.saidone.component.BaseComponent;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps what collectors already know about the nodes they enqueue, so that
+ * processors can avoid asking Alfresco for it again.
+ * <p>
+ * The queue only carries node ids: a collector registers the hint of a node
+ * right before enqueuing it and the hint is dropped as soon as the node has
+ * been processed, hence the registry never holds much more than the queue
+ * itself. Processors must be prepared for hints to be missing, e.g. when the
+ * collector does not provide them.
+ */
+@Service
+public class NodeHintService extends BaseComponent {
+
+    /**
+     * Information about a node known to the collector.
+     *
+     * @param parentId id of the primary parent, or {@code null}
+     * @param path     display path of the parent folder, as returned by
+     *                 Alfresco with {@code include=path}, or {@code null}
+     */
+    public record NodeHint(String parentId, String path) {
+    }
+
+    private final Map<String, NodeHint> hints = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the hint of a node.
+     *
+     * @param nodeId   id of the node
+     * @param parentId id of the primary parent
+     * @param path     display path of the parent folder
+     */
+    public void put(String nodeId, String parentId, String path) {
+        hints.put(nodeId, new NodeHint(parentId, path));
+    }
+
+    /**
+     * @param nodeId id of the node
+     * @return the hint of the node, or {@code null} if none was registered
+     */
+    public NodeHint get(String nodeId) {
+        return hints.get(nodeId);
+    }
+
+    /**
+     * Drops the hint of a node.
+     *
+     * @param nodeId id of the node
+     */
+    public void remove(String nodeId) {
+        hints.remove(nodeId);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.saidone.component.BaseComponent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the nodes to process into a regular lane and a large file lane by
+ * content size, so that a few huge files cannot keep the consumers away
+ * from the many small ones.
+ * <p>
+ * When {@code application.large-file-threshold-mb} is positive, collectors
+ * knowing the content size of a node (see
+ * {@link org.saidone.collectors.AbstractNodeCollector}) put the nodes reaching
+ * the threshold in a separate queue, drained by
+ * {@code application.large-file-consumer-threads} dedicated consumers. The
+ * regular consumers never take large files, while the large file consumers
+ * take regular nodes whenever their own lane is empty, so that no thread
+ * sits idle. Nodes of unknown size always go to the regular lane.
+ */
+@Service
+@Slf4j
+public class SizeLaneService extends BaseComponent {
+
+    /**
+     * Interval at which a large file consumer checks both lanes while waiting.
+     */
+    private static final long POLL_INTERVAL_MS = 100;
+
+    @Autowired
+    private LinkedBlockingQueue<String> queue;
+
+    @Value("${application.large-file-threshold-mb:0}")
+    private long largeFileThresholdMb;
+
+    @Getter
+    @Value("${application.large-file-consumer-threads:2}")
+    private int largeFileConsumerThreads;
+
+    @Value("${application.queue-size}")
+    private int queueSize;
+
+    /**
+     * Queue of the large file lane, the regular lane being the shared queue.
+     */
+    @Getter
+    private LinkedBlockingQueue<String> largeFileQueue;
+
+    /**
+     * Creates the queue of the large file lane, bounded like the regular one.
+     */
+    @PostConstruct
+    public void init() {
+        largeFileQueue = new LinkedBlockingQueue<>(Math.max(1, queueSize));
+        if (isEnabled()) {
+            log.info("Nodes of {} MB or more are processed by {} large file consumers", largeFileThresholdMb, largeFileConsumerThreads);
+        }
+    }
+
+    /**
+     * @return whether the large file lane is enabled
+     */
+    public boolean isEnabled() {
+        return largeFileThresholdMb > 0 && largeFileConsumerThreads > 0;
+    }
+
+    /**
+     * Tells whether a node belongs to the large file lane.
+     *
+     * @param size content size in bytes, or {@code null} if unknown
+     * @return {@code true} if the lane is enabled and the size reaches the
+     * threshold
+     */
+    public boolean isLarge(Long size) {
+        return isEnabled() && size != null && size >= largeFileThresholdMb * 1024 * 1024;
+    }
+
+    /**
+     * Takes the next node for a large file consumer: from the large file
+     * lane if any, otherwise from the regular one.
+     *
+     * @param timeoutMs how long to wait for a node in either lane
+     * @return the node id, or {@code null} if both lanes stayed empty
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public String poll(long timeoutMs) throws InterruptedException {
+        val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        do {
+            var nodeId = largeFileQueue.poll();
+            if (nodeId == null) {
+                nodeId = queue.poll();
+            }
+            if (nodeId == null) {
+                nodeId = largeFileQueue.poll(Math.min(POLL_INTERVAL_MS, Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))), TimeUnit.MILLISECONDS);
+            }
+            if (nodeId != null) {
+                return nodeId;
+            }
+        } while (System.nanoTime() < deadline);
+        return null;
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.utils;
+
+import lombok.experimental.UtilityClass;
+import lombok.val;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Helpers that compute bucket paths used to spread a large number of items
+ * across a bounded tree of folders.
+ * <p>
+ * A bucket is represented as an ordered list of folder names, from the
+ * outermost to the innermost one.
+ */
+@UtilityClass
+public class BucketUtils {
+
+    /**
+     * Computes a hash based bucket for the given key.
+     * <p>
+     * The key is hashed with MD5 and the first {@code depth * width} hex
+     * characters of the digest are split into {@code depth} folder names of
+     * {@code width} characters each, e.g. {@code 3f/a9} for depth 2 and width 2.
+     * Each level therefore holds at most {@code 16^width} entries.
+     *
+     * @param key   value to hash, typically a node id
+     * @param depth number of folder levels
+     * @param width number of hex characters per level
+     * @return list of folder names
+     * @throws IllegalArgumentException if depth or width are not positive or
+     *                                  exceed the digest length
+     */
+    public List<String> hashBucket(String key, int depth, int width) {
+        if (depth <= 0 || width <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid bucket depth/width: %d/%d", depth, width));
+        }
+        val digest = DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
+        if (depth * width > digest.length()) {
+            throw new IllegalArgumentException(String.format("Bucket depth * width must not exceed %d", digest.length()));
+        }
+        val bucket = new ArrayList<String>(depth);
+        for (var i = 0; i < depth; i++) {
+            bucket.add(digest.substring(i * width, (i + 1) * width));
+        }
+        return bucket;
+    }
+
+    /**
+     * Computes a date based bucket by formatting the given date with a
+     * pattern where {@code /} separates the folder levels, e.g.
+     * {@code yyyy/MM/dd}.
+     *
+     * @param date    date to format
+     * @param pattern {@link DateTimeFormatter} pattern, levels separated by {@code /}
+     * @return list of folder names
+     */
+    public List<String> dateBucket(OffsetDateTime date, String pattern) {
+        return Arrays.stream(date.format(DateTimeFormatter.ofPattern(pattern)).split("/"))
+                .filter(s -> !s.isBlank())
+                .toList();
+    }
+
+}
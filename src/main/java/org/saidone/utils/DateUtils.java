@@ -0,0 +1,53 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.saidone.utils;
+
+import lombok.experimental.UtilityClass;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Helpers handling the dates exchanged with the Alfresco REST API.
+ */
+@UtilityClass
+public class DateUtils {
+
+    /**
+     * Date format of the properties returned by the REST API.
+     */
+    public static final DateTimeFormatter ALFRESCO_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+
+    /**
+     * Parses a date either in the format returned by the REST API
+     * ({@code 2020-01-01T12:00:00.000+0000}) or in ISO-8601 format.
+     *
+     * @param value the date
+     * @return the parsed date
+     * @throws DateTimeParseException if the value matches neither format
+     */
+    public OffsetDateTime parseDate(String value) {
+        try {
+            return OffsetDateTime.parse(value, ALFRESCO_DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            return OffsetDateTime.parse(value);
+        }
+    }
+
+}
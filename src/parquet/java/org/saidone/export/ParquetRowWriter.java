@@ -0,0 +1,144 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.export;
+
+import lombok.val;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.LocalOutputFile;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.Types;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.*;
+
+/**
+ * Writes rows to a Parquet file through the local file API of Parquet,
+ * without Hadoop.
+ * <p>
+ * Rows are buffered in memory and flushed as a row group each time the
+ * buffer reaches the configured row group size, so each instance holds up to
+ * one row group. Column types are {@code string}, {@code long},
+ * {@code double}, {@code boolean}, {@code datetime} (stored as UTC
+ * milliseconds) and {@code list} (a list of strings); all columns are
+ * optional.
+ * <p>
+ * This class is only compiled with the {@code parquet} Maven profile.
+ */
+public class ParquetRowWriter implements RowWriter {
+
+    private final List<String> types;
+    private final SimpleGroupFactory groupFactory;
+    private final ParquetWriter<Group> writer;
+
+    /**
+     * Creates the file, replacing any existing one.
+     *
+     * @param file         destination file
+     * @param names        column names
+     * @param types        column types
+     * @param rowGroupSize size of a row group in bytes
+     * @param compression  compression codec, e.g. {@code snappy}
+     * @throws IOException if the file cannot be created
+     */
+    public ParquetRowWriter(Path file, List<String> names, List<String> types, long rowGroupSize, String compression) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        val schema = getSchema(names, types);
+        this.types = types;
+        this.groupFactory = new SimpleGroupFactory(schema);
+        this.writer = ExampleParquetWriter.builder(new LocalOutputFile(file))
+                .withConf(new PlainParquetConfiguration())
+                .withType(schema)
+                .withRowGroupSize(rowGroupSize)
+                .withCompressionCodec(CompressionCodecName.valueOf(compression.toUpperCase(Locale.ROOT)))
+                .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                .build();
+    }
+
+    @Override
+    public void writeRow(List<?> values) throws IOException {
+        val group = groupFactory.newGroup();
+        for (var i = 0; i < values.size(); i++) {
+            val value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            switch (types.get(i)) {
+                case "long" -> group.add(i, ((Number) value).longValue());
+                case "double" -> group.add(i, ((Number) value).doubleValue());
+                case "boolean" -> group.add(i, (boolean) value);
+                case "datetime" -> group.add(i, OffsetDateTime.parse(value.toString()).toInstant().toEpochMilli());
+                case "list" -> {
+                    val list = group.addGroup(i);
+                    for (val element : (Collection<?>) value) {
+                        list.addGroup(0).add(0, String.valueOf(element));
+                    }
+                }
+                default -> group.add(i, value.toString());
+            }
+        }
+        writer.write(group);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Builds the Parquet schema of the columns.
+     *
+     * @param names column names
+     * @param types column types
+     * @return the schema
+     */
+    private static MessageType getSchema(List<String> names, List<String> types) {
+        val builder = Types.buildMessage();
+        for (var i = 0; i < names.size(); i++) {
+            val name = names.get(i);
+            switch (types.get(i)) {
+                case "long" -> builder.optional(INT64).named(name);
+                case "double" -> builder.optional(DOUBLE).named(name);
+                case "boolean" -> builder.optional(BOOLEAN).named(name);
+                case "datetime" -> builder.optional(INT64)
+                        .as(LogicalTypeAnnotation.timestampType(true, LogicalTypeAnnotation.TimeUnit.MILLIS))
+                        .named(name);
+                case "list" -> builder.optionalList()
+                        .optionalElement(BINARY).as(LogicalTypeAnnotation.stringType())
+                        .named(name);
+                default -> builder.optional(BINARY).as(LogicalTypeAnnotation.stringType()).named(name);
+            }
+        }
+        return builder.named("metadata");
+    }
+
+}
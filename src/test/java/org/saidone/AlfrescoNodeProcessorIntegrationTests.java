@@ -27,7 +27,10 @@ import org.alfresco.core.handler.NodesApi;
 import org.alfresco.core.handler.TrashcanApi;
 import org.alfresco.core.model.NodeBodyCreate;
 import org.alfresco.core.model.NodeBodyUpdate;
+import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.*;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
 import org.saidone.collectors.NodeCollector;
 import org.saidone.collectors.NodeListCollector;
 import org.saidone.model.alfresco.ContentModel;
@@ -35,7 +38,11 @@ import org.saidone.model.config.CollectorConfig;
 import org.saidone.model.config.Permission;
 import org.saidone.model.config.Permissions;
 import org.saidone.model.config.ProcessorConfig;
+import org.saidone.processors.LogNodeNameProcessor;
 import org.saidone.processors.NodeProcessor;
+import org.saidone.service.DbNodeReaderService;
+import org.saidone.service.NodeHintService;
+import org.saidone.utils.BucketUtils;
 import org.saidone.utils.CastUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -43,15 +50,21 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.ApplicationContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.File;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 @ActiveProfiles("test")
 
@@ -77,6 +90,12 @@ class AlfrescoNodeProcessorIntegrationTests extends BaseTest {
     @Autowired
     TrashcanApi trashcanApi;
 
+    @Autowired
+    NodeHintService nodeHintService;
+
+    @Autowired
+    DbNodeReaderService dbNodeReaderService;
+
     @Value("${application.test-root-folder}")
     private String testRootFolderPath;
 
@@ -85,6 +104,9 @@ class AlfrescoNodeProcessorIntegrationTests extends BaseTest {
     @MockitoBean
     AlfrescoNodeProcessorApplicationRunner alfrescoNodeProcessorApplicationRunner;
 
+    @MockitoSpyBean
+    LogNodeNameProcessor logNodeNameProcessor;
+
     @BeforeEach
     public void printName(TestInfo testInfo) {
         log.info("testing --> {}", testInfo.getDisplayName());
@@ -252,6 +274,31 @@ class AlfrescoNodeProcessorIntegrationTests extends BaseTest {
         }
     }
 
+    @Test
+    @SneakyThrows
+    void testNodeListCollectorGzip() {
+        val nodeIds = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        // write a compressed list with a header line, a store reference, a blank and an invalid line
+        val file = File.createTempFile("nodeList-", ".txt.gz");
+        try (val out = new GZIPOutputStream(Files.newOutputStream(file.toPath()))) {
+            out.write(String.format("node-id%n workspace://SpacesStore/%s %n%nnot-a-node-id%n%s%n",
+                    nodeIds.get(0).toUpperCase(), nodeIds.get(1)).getBytes(StandardCharsets.UTF_8));
+        }
+        // mock config
+        val collectorConfig = new CollectorConfig();
+        collectorConfig.addArg(NodeListCollector.NODE_LIST_ARG, file.getAbsolutePath());
+        collectorConfig.addArg("start-offset", 1);
+        // use collector to populate queue
+        (((NodeCollector) context.getBean("nodeListCollector")).collect(collectorConfig)).get();
+        try {
+            // assertions
+            Assertions.assertEquals(nodeIds, new ArrayList<>(queue));
+        } finally {
+            // clean up
+            Files.delete(file.toPath());
+        }
+    }
+
     @Test
     @SneakyThrows
     void testNodeTreeCollector() {
@@ -308,6 +355,70 @@ class AlfrescoNodeProcessorIntegrationTests extends BaseTest {
         }
     }
 
+    @Test
+    @SneakyThrows
+    void testMoveNodeProcessorWithHashBuckets() {
+        // create node
+        val nodeId = createNode();
+        // add node to queue
+        queue.add(nodeId);
+        // create target folder
+        val targetParentId = createFolder();
+        // mock config
+        val processorConfig = new ProcessorConfig();
+        processorConfig.addArg("target-parent", targetParentId);
+        processorConfig.addArg("bucket-strategy", "hash");
+        processorConfig.addArg("bucket-depth", 2);
+        processorConfig.addArg("bucket-width", 1);
+        // process node
+        ((NodeProcessor) context.getBean("moveNodeProcessor")).process(processorConfig).get();
+        // get nodes
+        val node = Objects.requireNonNull(nodesApi.getNode(nodeId, List.of("path"), null, null).getBody()).getEntry();
+        val targetParent = Objects.requireNonNull(nodesApi.getNode(targetParentId, List.of("path"), null, null).getBody()).getEntry();
+        try {
+            // assertions
+            val bucket = String.join("/", BucketUtils.hashBucket(nodeId, 2, 1));
+            Assertions.assertEquals(String.format("%s/%s/%s", targetParent.getPath().getName(), targetParent.getName(), bucket), node.getPath().getName());
+            Assertions.assertEquals(1, processedNodesCounter.get());
+        } finally {
+            // clean up
+            nodesApi.deleteNode(targetParentId, true);
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void testMoveNodeProcessorWithDateBuckets() {
+        // create a node with a custom date property
+        val nodeId = createNode();
+        val nodeBodyUpdate = new NodeBodyUpdate();
+        nodeBodyUpdate.setAspectNames(List.of(ContentModel.ASP_EFFECTIVITY));
+        nodeBodyUpdate.setProperties(Map.of(ContentModel.PROP_FROM, "2020-01-01T12:00:00.000+0000"));
+        nodesApi.updateNode(nodeId, nodeBodyUpdate, null, null);
+        // add node to queue
+        queue.add(nodeId);
+        // create target folder
+        val targetParentId = createFolder();
+        // mock config
+        val processorConfig = new ProcessorConfig();
+        processorConfig.addArg("target-parent", targetParentId);
+        processorConfig.addArg("bucket-strategy", "date");
+        processorConfig.addArg("bucket-property", ContentModel.PROP_FROM);
+        // process node
+        ((NodeProcessor) context.getBean("moveNodeProcessor")).process(processorConfig).get();
+        // get nodes
+        val node = Objects.requireNonNull(nodesApi.getNode(nodeId, List.of("path"), null, null).getBody()).getEntry();
+        val targetParent = Objects.requireNonNull(nodesApi.getNode(targetParentId, List.of("path"), null, null).getBody()).getEntry();
+        try {
+            // assertions
+            Assertions.assertEquals(String.format("%s/%s/2020/01/01", targetParent.getPath().getName(), targetParent.getName()), node.getPath().getName());
+            Assertions.assertEquals(1, processedNodesCounter.get());
+        } finally {
+            // clean up
+            nodesApi.deleteNode(targetParentId, true);
+        }
+    }
+
     @Test
     @SneakyThrows
     @SuppressWarnings("unchecked")
@@ -342,6 +453,44 @@ class AlfrescoNodeProcessorIntegrationTests extends BaseTest {
         }
     }
 
+    @Test
+    @SneakyThrows
+    void testChainingNodeProcessorWithSink() {
+        // create node
+        val url = (URI.create(TEST_DATA_URL).toURL());
+        val nodeId = createNode(getTestRootFolderNodeId(), url).getId();
+        // add node to queue
+        queue.add(nodeId);
+        // make the first processor of the chain fail on completion
+        Mockito.doThrow(new IllegalStateException("afterProcess failure")).when(logNodeNameProcessor).afterProcess(ArgumentMatchers.any());
+        // mock config
+        val outputDir = Files.createTempDirectory("anp-");
+        val chainConfig = List.of(
+                Map.of("name", "LogNodeNameProcessor"),
+                Map.of(
+                        "name", "DownloadNodeProcessor",
+                        "args", Map.of("output-dir", outputDir.toString(), "archive-format", "zip")
+                ));
+        val processorConfig = new ProcessorConfig();
+        processorConfig.addArg("processors", chainConfig);
+        try {
+            // process node
+            ((NodeProcessor) context.getBean("chainingNodeProcessor")).process(processorConfig).get();
+            val fileName = TEST_DATA_URL.replaceAll("^.*/", "");
+            // check that the archive has been completed anyway
+            @Cleanup val archives = Files.list(outputDir);
+            val archive = archives.filter(p -> p.toString().endsWith(".zip")).findFirst().orElseThrow();
+            @Cleanup val zipFile = new ZipFile(archive.toFile());
+            Assertions.assertTrue(zipFile.stream().map(ZipEntry::getName).anyMatch(n -> n.endsWith(String.format("/%s", fileName))));
+            Assertions.assertEquals(1, processedNodesCounter.get());
+        } finally {
+            // clean up
+            Mockito.reset(logNodeNameProcessor);
+            nodesApi.deleteNode(nodeId, true);
+            FileUtils.deleteDirectory(outputDir.toFile());
+        }
+    }
+
     @Test
     @SneakyThrows
     void testDownloadNodeProcessor() {
@@ -384,6 +533,109 @@ class AlfrescoNodeProcessorIntegrationTests extends BaseTest {
         }
     }
 
+    @Test
+    @SneakyThrows
+    void testDownloadNodeProcessorWithDbNodeReader() {
+        // create node
+        val url = (URI.create(TEST_DATA_URL).toURL());
+        val nodeId = createNode(getTestRootFolderNodeId(), url).getId();
+        val restNode = Objects.requireNonNull(nodesApi.getNode(nodeId, List.of("path"), null, null).getBody()).getEntry();
+        // add node to queue along with its path, as tree collectors do
+        nodeHintService.put(nodeId, restNode.getParentId(), restNode.getPath().getName());
+        queue.add(nodeId);
+        // mock config
+        val outputDir = Files.createTempDirectory("anp-");
+        val processorConfig = new ProcessorConfig();
+        processorConfig.addArg("output-dir", outputDir.toString());
+        // read nodes from the database
+        ReflectionTestUtils.setField(dbNodeReaderService, "type", "db");
+        ReflectionTestUtils.setField(dbNodeReaderService, "readOnly", true);
+        try {
+            // process node
+            ((NodeProcessor) context.getBean("downloadNodeProcessor")).process(processorConfig).get();
+            val fileName = TEST_DATA_URL.replaceAll("^.*/", "");
+            val downloadPath = outputDir.resolve(restNode.getPath().getName().replaceFirst("^/+", ""));
+            val metadataFile = downloadPath.resolve(String.format("%s.metadata.properties.xml", fileName));
+            // check that the node has been exported with the same metadata as through the REST API
+            Assertions.assertTrue(Files.exists(downloadPath.resolve(fileName)));
+            Assertions.assertTrue(Files.exists(metadataFile));
+            val metadata = new Properties();
+            try (val in = Files.newInputStream(metadataFile)) {
+                metadata.loadFromXML(in);
+            }
+            Assertions.assertEquals(restNode.getCreatedByUser().getDisplayName(), metadata.getProperty(ContentModel.PROP_CREATOR));
+            Assertions.assertEquals(restNode.getModifiedByUser().getDisplayName(), metadata.getProperty(ContentModel.PROP_MODIFIER));
+            Assertions.assertEquals(1, processedNodesCounter.get());
+        } finally {
+            // clean up
+            ReflectionTestUtils.setField(dbNodeReaderService, "type", "rest");
+            ReflectionTestUtils.setField(dbNodeReaderService, "readOnly", false);
+            nodesApi.deleteNode(nodeId, true);
+            FileUtils.deleteDirectory(outputDir.toFile());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void testDownloadNodeProcessorToZipArchive() {
+        // create node
+        val url = (URI.create(TEST_DATA_URL).toURL());
+        val nodeId = createNode(getTestRootFolderNodeId(), url).getId();
+        // add node to queue
+        queue.add(nodeId);
+        // mock config
+        val outputDir = Files.createTempDirectory("anp-");
+        val processorConfig = new ProcessorConfig();
+        processorConfig.addArg("output-dir", outputDir.toString());
+        processorConfig.addArg("archive-format", "zip");
+        // process node
+        ((NodeProcessor) context.getBean("downloadNodeProcessor")).process(processorConfig).get();
+        try {
+            val fileName = TEST_DATA_URL.replaceAll("^.*/", "");
+            // check that the archive contains content and metadata
+            @Cleanup val archives = Files.list(outputDir);
+            val archive = archives.filter(p -> p.toString().endsWith(".zip")).findFirst().orElseThrow();
+            @Cleanup val zipFile = new ZipFile(archive.toFile());
+            val entryNames = zipFile.stream().map(ZipEntry::getName).toList();
+            Assertions.assertTrue(entryNames.stream().anyMatch(n -> n.endsWith(String.format("/%s", fileName))));
+            Assertions.assertTrue(entryNames.stream().anyMatch(n -> n.endsWith(String.format("/%s.metadata.properties.xml", fileName))));
+        } finally {
+            // clean up
+            nodesApi.deleteNode(nodeId, true);
+            FileUtils.deleteDirectory(outputDir.toFile());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void testMetadataExportProcessor() {
+        // create node
+        val url = (URI.create(TEST_DATA_URL).toURL());
+        val nodeId = createNode(getTestRootFolderNodeId(), url).getId();
+        // add node to queue
+        queue.add(nodeId);
+        // mock config
+        val outputDir = Files.createTempDirectory("anp-");
+        val processorConfig = new ProcessorConfig();
+        processorConfig.addArg("output-dir", outputDir.toString());
+        processorConfig.addArg("columns", List.of("id", "type", "size", ContentModel.PROP_TITLE));
+        // process node
+        ((NodeProcessor) context.getBean("metadataExportProcessor")).process(processorConfig).get();
+        try {
+            // check that the export contains the header and the node row
+            @Cleanup val files = Files.list(outputDir);
+            val file = files.filter(p -> p.toString().endsWith(".csv")).findFirst().orElseThrow();
+            val lines = Files.readAllLines(file);
+            Assertions.assertEquals(String.format("id,type,size,%s", ContentModel.PROP_TITLE), lines.get(0));
+            Assertions.assertEquals(2, lines.size());
+            Assertions.assertTrue(lines.get(1).startsWith(String.format("%s,%s,", nodeId, ContentModel.TYPE_CONTENT)));
+        } finally {
+            // clean up
+            nodesApi.deleteNode(nodeId, true);
+            FileUtils.deleteDirectory(outputDir.toFile());
+        }
+    }
+
     @Test
     @SneakyThrows
     void testNormalizeMetadataProcessor() {
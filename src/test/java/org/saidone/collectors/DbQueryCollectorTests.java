@@ -0,0 +1,165 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.collectors;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.saidone.model.config.CollectorConfig;
+
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.saidone.collectors.FakeDatabase.row;
+
+/**
+ * Tests of the query built and paged by the {@link DbQueryCollector} against
+ * an in-memory database.
+ */
+class DbQueryCollectorTests {
+
+    private static final Map<String, Long> QNAMES = Map.of("content", 102L, "author", 201L, "count", 202L, "ratio", 203L, "flag", 204L, "title", 205L);
+
+    private static final List<Long> NODE_IDS = List.of(3L, 5L, 8L, 13L, 21L);
+
+    private FakeDatabase database;
+    private DbQueryCollector collector;
+
+    @BeforeEach
+    public void setUp() {
+        database = FakeDatabase.register("query", this::query);
+        collector = new DbQueryCollector();
+        collector.queue = new LinkedBlockingQueue<>();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.deregister();
+    }
+
+    @Test
+    @SneakyThrows
+    void testPagingById() {
+        // mock config
+        val collectorConfig = getCollectorConfig();
+        collectorConfig.addArg("fetch-size", 2);
+        collector.collectNodes(collectorConfig);
+        Assertions.assertEquals(List.of("node-3", "node-5", "node-8", "node-13", "node-21"), new ArrayList<>(collector.queue));
+        // each page starts after the last id of the previous one
+        val lowerBounds = getQueries().stream().map(e -> e.params().get(e.params().size() - 1)).toList();
+        Assertions.assertEquals(List.of(0L, 5L, 13L), lowerBounds);
+    }
+
+    @Test
+    @SneakyThrows
+    void testPropertyConditions() {
+        // mock config
+        val collectorConfig = getCollectorConfig();
+        collectorConfig.addArg("namespaces", Map.of("acme", "http://www.acme.com/model/1.0"));
+        collectorConfig.addArg("modified-after", "2024-01-01T00:00:00Z");
+        val properties = new HashMap<String, Object>();
+        properties.put("cm:author", "John Doe");
+        properties.put("acme:count", 3);
+        properties.put("acme:ratio", 1.5);
+        properties.put("acme:flag", true);
+        properties.put("cm:title", null);
+        collectorConfig.addArg("properties", properties);
+        collector.collectNodes(collectorConfig);
+        val query = getQueries().get(0);
+        val sql = query.sql();
+        Assertions.assertTrue(sql.contains("WHERE n.type_qname_id IN (102)"), sql);
+        // archived nodes and versions are left out by default
+        Assertions.assertTrue(sql.contains("AND n.store_id = 6"), sql);
+        Assertions.assertTrue(sql.contains("AND n.audit_modified > ?"), sql);
+        Assertions.assertTrue(sql.contains("p.qname_id = 201 AND p.string_value = ?"), sql);
+        Assertions.assertTrue(sql.contains("p.qname_id = 202 AND p.long_value = ?"), sql);
+        Assertions.assertTrue(sql.contains("p.qname_id = 203 AND (p.double_value = ? OR p.float_value = CAST(? AS REAL))"), sql);
+        Assertions.assertTrue(sql.contains("p.qname_id = 204 AND p.boolean_value = ?"), sql);
+        Assertions.assertTrue(sql.contains("AND NOT EXISTS (SELECT 1 FROM alf_node_properties p WHERE p.node_id = n.id AND p.qname_id = 205 AND p.persisted_type_n <> 0)"), sql);
+        // the dates of the filter come first, then a value per property, two for decimals
+        val params = query.params();
+        Assertions.assertEquals(8, params.size(), params.toString());
+        Assertions.assertEquals("2024-01-01T00:00:00.000Z", params.get(1));
+        Assertions.assertEquals(
+                List.of("1.5", "1.5", "3", "John Doe", "true"),
+                params.entrySet().stream().filter(e -> e.getKey() > 1 && e.getKey() < 7).map(e -> e.getValue().toString()).sorted().toList());
+    }
+
+    @Test
+    @SneakyThrows
+    void testUnknownProperty() {
+        // mock config
+        val collectorConfig = getCollectorConfig();
+        collectorConfig.addArg("properties", Map.of("cm:description", "unused"));
+        collector.collectNodes(collectorConfig);
+        // a property never used in the repository matches nothing
+        Assertions.assertTrue(getQueries().get(0).sql().contains("AND FALSE"));
+        Assertions.assertTrue(collector.queue.isEmpty());
+    }
+
+    private CollectorConfig getCollectorConfig() {
+        val collectorConfig = new CollectorConfig();
+        collectorConfig.addArg("db-url", database.getUrl());
+        return collectorConfig;
+    }
+
+    /**
+     * @return the executions of the node query, in order
+     */
+    private List<FakeDatabase.Execution> getQueries() {
+        return database.executions.stream().filter(e -> e.sql().contains("ORDER BY n.id")).toList();
+    }
+
+    /**
+     * Answers the statements of the collector: qname and store lookups, and
+     * pages of {@link #NODE_IDS} ignoring the conditions on the properties
+     * unless nothing can match.
+     *
+     * @param execution the statement
+     * @return the matching rows
+     */
+    private List<Map<String, Object>> query(FakeDatabase.Execution execution) {
+        val sql = execution.sql();
+        val params = execution.params();
+        if (sql.contains("FROM alf_qname q JOIN alf_namespace")) {
+            val id = QNAMES.get((String) params.get(2));
+            return id != null ? List.of(row("id", id)) : List.of();
+        }
+        if (sql.contains("FROM alf_store")) {
+            return "workspace".equals(params.get(1)) && "SpacesStore".equals(params.get(2)) ? List.of(row("id", 6L)) : List.of();
+        }
+        if (sql.contains("ORDER BY n.id")) {
+            if (sql.contains("AND FALSE")) {
+                return List.of();
+            }
+            val lastId = (Long) params.get(params.size() - 1);
+            val limit = (Integer) params.get(params.size());
+            return NODE_IDS.stream()
+                    .filter(id -> id > lastId)
+                    .limit(limit)
+                    .map(id -> row("id", id, "uuid", String.format("node-%d", id)))
+                    .toList();
+        }
+        throw new IllegalStateException(String.format("Unexpected statement: %s", sql));
+    }
+
+}
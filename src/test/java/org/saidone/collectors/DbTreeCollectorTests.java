@@ -0,0 +1,245 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.collectors;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.saidone.model.config.CollectorConfig;
+import org.saidone.service.NodeHintService;
+
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.saidone.collectors.FakeDatabase.row;
+
+/**
+ * Tests of the extraction strategies of the {@link DbTreeCollector} against
+ * an in-memory database.
+ */
+class DbTreeCollectorTests {
+
+    private static final Map<String, Long> QNAMES = Map.of("folder", 101L, "content", 102L, "name", 103L, "sites", 104L);
+
+    /**
+     * A node of the repository.
+     *
+     * @param id       database id
+     * @param uuid     node id
+     * @param parentId database id of the primary parent, or {@code null}
+     * @param folder   whether the node is a folder
+     * @param name     node name
+     */
+    private record TreeNode(long id, String uuid, Long parentId, boolean folder, String name) {
+    }
+
+    private static final List<TreeNode> TREE = List.of(
+            new TreeNode(1, "root", null, true, "Company Home"),
+            new TreeNode(2, "folder-a", 1L, true, "A"),
+            new TreeNode(3, "folder-b", 1L, true, "B"),
+            new TreeNode(4, "folder-c", 2L, true, "C"),
+            new TreeNode(5, "folder-x", null, true, "X"),
+            new TreeNode(10, "doc-1", 1L, false, "1.txt"),
+            new TreeNode(11, "doc-2", 2L, false, "2.txt"),
+            new TreeNode(12, "doc-3", 4L, false, "3.txt"),
+            new TreeNode(13, "doc-4", 4L, false, "4.txt"),
+            new TreeNode(14, "doc-5", 3L, false, "5.txt"),
+            new TreeNode(15, "doc-outside", 5L, false, "6.txt"));
+
+    /**
+     * Documents under the root and their expected hints.
+     */
+    private static final Map<String, NodeHintService.NodeHint> EXPECTED = Map.of(
+            "doc-1", new NodeHintService.NodeHint("root", "/Company Home"),
+            "doc-2", new NodeHintService.NodeHint("folder-a", "/Company Home/A"),
+            "doc-3", new NodeHintService.NodeHint("folder-c", "/Company Home/A/C"),
+            "doc-4", new NodeHintService.NodeHint("folder-c", "/Company Home/A/C"),
+            "doc-5", new NodeHintService.NodeHint("folder-b", "/Company Home/B"));
+
+    private FakeDatabase database;
+    private DbTreeCollector collector;
+
+    @BeforeEach
+    public void setUp() {
+        database = FakeDatabase.register("tree", this::query);
+        collector = new DbTreeCollector();
+        collector.queue = new LinkedBlockingQueue<>();
+        collector.nodeHintService = new NodeHintService();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.deregister();
+    }
+
+    @Test
+    @SneakyThrows
+    void testParallel() {
+        // mock config
+        val collectorConfig = getCollectorConfig();
+        collectorConfig.addArg("parallelism", 3);
+        collectorConfig.addArg("folder-batch-size", 1);
+        collector.collectNodes(collectorConfig);
+        assertCollected(false);
+        // folders are walked by the default folder types, documents by content type
+        Assertions.assertTrue(database.executions.stream()
+                .anyMatch(e -> e.sql().contains("WITH RECURSIVE folder_tree") && e.sql().contains("n.type_qname_id IN (101,104)")));
+        Assertions.assertTrue(database.executions.stream()
+                .filter(e -> e.sql().contains("n_doc"))
+                .allMatch(e -> e.sql().contains("n_doc.type_qname_id IN (102)")));
+    }
+
+    @Test
+    @SneakyThrows
+    void testParallelWithPaths() {
+        // mock config
+        val collectorConfig = getCollectorConfig();
+        collectorConfig.addArg("parallelism", 2);
+        collectorConfig.addArg("folder-batch-size", 2);
+        collectorConfig.addArg("with-paths", true);
+        collector.collectNodes(collectorConfig);
+        assertCollected(true);
+    }
+
+    @Test
+    @SneakyThrows
+    void testBreadthFirst() {
+        // mock config
+        val collectorConfig = getCollectorConfig();
+        collectorConfig.addArg("strategy", "bfs");
+        collectorConfig.addArg("folder-batch-size", 1);
+        collector.collectNodes(collectorConfig);
+        assertCollected(false);
+        // the tree is walked without recursive queries
+        Assertions.assertTrue(database.executions.stream().noneMatch(e -> e.sql().contains("RECURSIVE")));
+        // batches of one folder: one documents statement per folder
+        Assertions.assertEquals(4, database.executions.stream().filter(e -> e.sql().contains("n_doc")).count());
+    }
+
+    @Test
+    @SneakyThrows
+    void testBreadthFirstWithPaths() {
+        // mock config
+        val collectorConfig = getCollectorConfig();
+        collectorConfig.addArg("strategy", "bfs");
+        collectorConfig.addArg("folder-batch-size", 2);
+        collectorConfig.addArg("with-paths", true);
+        collector.collectNodes(collectorConfig);
+        assertCollected(true);
+    }
+
+    @Test
+    @SneakyThrows
+    void testBreadthFirstUnknownRoot() {
+        // mock config
+        val collectorConfig = getCollectorConfig();
+        collectorConfig.addArg("root-node-id", "missing");
+        collectorConfig.addArg("strategy", "bfs");
+        collector.collectNodes(collectorConfig);
+        Assertions.assertTrue(collector.queue.isEmpty());
+    }
+
+    private CollectorConfig getCollectorConfig() {
+        val collectorConfig = new CollectorConfig();
+        collectorConfig.addArg("root-node-id", "root");
+        collectorConfig.addArg("db-url", database.getUrl());
+        return collectorConfig;
+    }
+
+    /**
+     * Checks that every document under the root has been collected exactly
+     * once, and its hint when paths are enabled.
+     *
+     * @param withPaths whether paths were enabled
+     */
+    private void assertCollected(boolean withPaths) {
+        val collected = new ArrayList<>(collector.queue);
+        Assertions.assertEquals(EXPECTED.size(), collected.size(), collected.toString());
+        Assertions.assertEquals(EXPECTED.keySet(), new HashSet<>(collected));
+        if (withPaths) {
+            EXPECTED.forEach((uuid, hint) -> Assertions.assertEquals(hint, collector.nodeHintService.get(uuid), uuid));
+        }
+    }
+
+    /**
+     * Answers the statements of the collector from {@link #TREE}.
+     *
+     * @param execution the statement
+     * @return the matching rows
+     */
+    private List<Map<String, Object>> query(FakeDatabase.Execution execution) {
+        val sql = execution.sql();
+        val params = execution.params();
+        if (sql.contains("FROM alf_qname q JOIN alf_namespace")) {
+            val id = QNAMES.get((String) params.get(2));
+            return id != null ? List.of(row("id", id)) : List.of();
+        }
+        if (sql.contains("WHERE local_name = ANY(?)")) {
+            return Arrays.stream((Object[]) params.get(1))
+                    .filter(QNAMES::containsKey)
+                    .map(localName -> row("id", QNAMES.get(localName)))
+                    .toList();
+        }
+        if (sql.contains("WITH RECURSIVE ancestors")) {
+            val names = new LinkedList<Map<String, Object>>();
+            for (var node = getNode((String) params.get(1)); node != null; node = getNode(node.parentId())) {
+                names.addFirst(row("name", node.name()));
+            }
+            return names;
+        }
+        if (sql.contains("WITH RECURSIVE folder_tree") && !sql.contains("n_doc")) {
+            val withPaths = sql.contains("CAST(? AS VARCHAR)");
+            val rows = new ArrayList<Map<String, Object>>();
+            addFolders(getNode((String) params.get(withPaths ? 2 : 1)), withPaths ? (String) params.get(1) : null, rows);
+            return rows;
+        }
+        if (sql.startsWith("SELECT id, uuid FROM alf_node WHERE uuid = ?")) {
+            val root = getNode((String) params.get(1));
+            return root != null ? List.of(row("id", root.id(), "uuid", root.uuid())) : List.of();
+        }
+        if (sql.contains("c.parent_node_id = ANY(?)")) {
+            val parentIds = new HashSet<>(Arrays.asList((Object[]) params.get(1)));
+            val documents = sql.contains("n_doc");
+            return TREE.stream()
+                    .filter(n -> n.folder() != documents && parentIds.contains(n.parentId()))
+                    .map(n -> row("id", n.id(), "uuid", n.uuid(), "parent_id", n.parentId(), "name", n.name()))
+                    .toList();
+        }
+        throw new IllegalStateException(String.format("Unexpected statement: %s", sql));
+    }
+
+    private static TreeNode getNode(String uuid) {
+        return TREE.stream().filter(n -> n.uuid().equals(uuid)).findFirst().orElse(null);
+    }
+
+    private static TreeNode getNode(Long id) {
+        return TREE.stream().filter(n -> Objects.equals(n.id(), id)).findFirst().orElse(null);
+    }
+
+    private static void addFolders(TreeNode folder, String path, List<Map<String, Object>> rows) {
+        rows.add(row("id", folder.id(), "uuid", folder.uuid(), "path", path));
+        TREE.stream()
+                .filter(n -> n.folder() && Objects.equals(n.parentId(), folder.id()))
+                .forEach(n -> addFolders(n, path != null ? String.format("%s/%s", path, n.name()) : null, rows));
+    }
+
+}
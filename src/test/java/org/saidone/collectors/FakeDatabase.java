@@ -0,0 +1,191 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.collectors;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * In-memory stand-in for the Alfresco database, registered as a JDBC driver
+ * for its own {@code jdbc:fake:} URL, so that the DB collectors can be tested
+ * without a live repository. Each statement executed is recorded and
+ * answered by a handler with the rows matching its SQL and parameters.
+ */
+class FakeDatabase implements Driver {
+
+    /**
+     * A statement executed.
+     *
+     * @param sql    the SQL, with whitespace collapsed to single spaces
+     * @param params the parameters, by index; arrays are bound as
+     *               {@code Object[]}
+     */
+    record Execution(String sql, Map<Integer, Object> params) {
+    }
+
+    private final String url;
+    private final Function<Execution, List<Map<String, Object>>> handler;
+
+    /**
+     * Statements executed so far, in order.
+     */
+    final List<Execution> executions = Collections.synchronizedList(new ArrayList<>());
+
+    private FakeDatabase(String url, Function<Execution, List<Map<String, Object>>> handler) {
+        this.url = url;
+        this.handler = handler;
+    }
+
+    /**
+     * Creates a database and registers it with the {@link DriverManager}.
+     *
+     * @param name    name of the database, part of its URL
+     * @param handler returns the rows answering a statement
+     * @return the database
+     */
+    @SneakyThrows
+    static FakeDatabase register(String name, Function<Execution, List<Map<String, Object>>> handler) {
+        val database = new FakeDatabase(String.format("jdbc:fake:%s", name), handler);
+        DriverManager.registerDriver(database);
+        return database;
+    }
+
+    /**
+     * Removes the database from the {@link DriverManager}.
+     */
+    @SneakyThrows
+    void deregister() {
+        DriverManager.deregisterDriver(this);
+    }
+
+    /**
+     * @return the JDBC URL of the database
+     */
+    String getUrl() {
+        return url;
+    }
+
+    /**
+     * Builds a row from column names and values, {@code null} values
+     * included.
+     *
+     * @param columns column names followed by their value
+     * @return the row
+     */
+    static Map<String, Object> row(Object... columns) {
+        val row = new HashMap<String, Object>();
+        for (var i = 0; i < columns.length; i += 2) {
+            row.put((String) columns[i], columns[i + 1]);
+        }
+        return row;
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        val conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.prepareStatement(ArgumentMatchers.anyString())).thenAnswer(i -> prepareStatement(i.getArgument(0)));
+        Mockito.when(conn.createArrayOf(ArgumentMatchers.anyString(), ArgumentMatchers.any())).thenAnswer(i -> createArray(i.getArgument(1)));
+        return conn;
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return this.url.equals(url);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    private PreparedStatement prepareStatement(String sql) throws SQLException {
+        val params = new HashMap<Integer, Object>();
+        val pstmt = Mockito.mock(PreparedStatement.class);
+        Answer<Void> bind = i -> {
+            params.put(i.getArgument(0), i.getArgument(1));
+            return null;
+        };
+        Mockito.doAnswer(bind).when(pstmt).setString(ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+        Mockito.doAnswer(bind).when(pstmt).setLong(ArgumentMatchers.anyInt(), ArgumentMatchers.anyLong());
+        Mockito.doAnswer(bind).when(pstmt).setInt(ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt());
+        Mockito.doAnswer(bind).when(pstmt).setObject(ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+        Mockito.doAnswer(i -> {
+            params.put(i.getArgument(0), i.<Array>getArgument(1).getArray());
+            return null;
+        }).when(pstmt).setArray(ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+        Mockito.when(pstmt.executeQuery()).thenAnswer(i -> {
+            val execution = new Execution(sql.strip().replaceAll("\\s+", " "), new HashMap<>(params));
+            executions.add(execution);
+            return createResultSet(handler.apply(execution));
+        });
+        return pstmt;
+    }
+
+    private static Array createArray(Object[] elements) throws SQLException {
+        val array = Mockito.mock(Array.class);
+        Mockito.when(array.getArray()).thenReturn(elements);
+        return array;
+    }
+
+    private static ResultSet createResultSet(List<Map<String, Object>> rows) throws SQLException {
+        val rs = Mockito.mock(ResultSet.class);
+        val cursor = new AtomicInteger(-1);
+        Mockito.when(rs.next()).thenAnswer(i -> cursor.incrementAndGet() < rows.size());
+        Mockito.when(rs.getLong(ArgumentMatchers.anyString())).thenAnswer(i ->
+                rows.get(cursor.get()).get(i.<String>getArgument(0)) instanceof Number n ? n.longValue() : 0L);
+        Mockito.when(rs.getString(ArgumentMatchers.anyString())).thenAnswer(i -> {
+            val value = rows.get(cursor.get()).get(i.<String>getArgument(0));
+            return value != null ? value.toString() : null;
+        });
+        return rs;
+    }
+
+}
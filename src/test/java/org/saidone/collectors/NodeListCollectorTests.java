@@ -0,0 +1,100 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.collectors;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.saidone.model.config.CollectorConfig;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests of the {@link NodeListCollector}.
+ */
+class NodeListCollectorTests {
+
+    private static final String NODE_ID = "0f3b1e5c-7d2a-4c8e-9b6f-1a2b3c4d5e6f";
+
+    @TempDir
+    Path tempDir;
+
+    private NodeListCollector collector;
+
+    @BeforeEach
+    public void setUp() {
+        collector = new NodeListCollector();
+        collector.queue = new LinkedBlockingQueue<>();
+        ReflectionTestUtils.setField(collector, "consumerThreads", 2);
+        ReflectionTestUtils.setField(collector, "queueSize", 10);
+    }
+
+    @Test
+    @SneakyThrows
+    void testCollectGzipNodeList() {
+        val file = tempDir.resolve("nodes.txt.gz");
+        try (val writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8)) {
+            writer.write(String.join("\n",
+                    "11111111-1111-1111-1111-111111111111",
+                    String.format("  workspace://SpacesStore/%s  ", NODE_ID.toUpperCase()),
+                    "",
+                    "not-a-node-id",
+                    String.format("archive://SpacesStore/%s", NODE_ID),
+                    NODE_ID));
+        }
+        // mock config
+        val collectorConfig = new CollectorConfig();
+        collectorConfig.addArg(NodeListCollector.NODE_LIST_ARG, file.toString());
+        collectorConfig.addArg("start-offset", 1);
+        collector.collectNodes(collectorConfig);
+        // the first line is skipped, invalid lines and other stores are dropped
+        Assertions.assertEquals(List.of(NODE_ID, NODE_ID), new ArrayList<>(collector.queue));
+    }
+
+    @Test
+    @SneakyThrows
+    void testResumeOffset() {
+        // nothing queued yet
+        Assertions.assertEquals(3, collector.getResumeOffset(new ArrayDeque<>(), 3));
+        // fewer ids than consumer threads: they may all be in progress
+        Assertions.assertEquals(4, collector.getResumeOffset(new ArrayDeque<>(List.of(5L)), 0));
+        Assertions.assertEquals(7, collector.getResumeOffset(new ArrayDeque<>(List.of(5L)), 7));
+        // the last two ids may be in progress
+        val pendingLines = new ArrayDeque<>(List.of(5L, 6L, 7L, 8L, 9L));
+        Assertions.assertEquals(7, collector.getResumeOffset(pendingLines, 0));
+        // plus the one still in the queue
+        collector.queue.put(NODE_ID);
+        Assertions.assertEquals(6, collector.getResumeOffset(pendingLines, 0));
+        // skipped invalid lines between queued ids are not counted
+        Assertions.assertEquals(9, collector.getResumeOffset(new ArrayDeque<>(List.of(2L, 10L, 20L, 30L)), 0));
+    }
+
+}
@@ -0,0 +1,252 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.collectors;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.alfresco.search.handler.SearchApi;
+import org.alfresco.search.model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.saidone.model.config.CollectorConfig;
+import org.saidone.service.SizeLaneService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Tests of the paging of the {@link QueryNodeCollector} against a mocked
+ * search API.
+ */
+class QueryNodeCollectorTests {
+
+    private static final String KEYSET_FIELD = "acme:code";
+
+    private static final Pattern LOWER_BOUND = Pattern.compile(String.format("%s:\\[\"?([^\" ]+)\"? TO MAX]", KEYSET_FIELD));
+
+    private static final Pattern CREATED_RANGE = Pattern.compile("cm:created:\\[\"([^\"]+)\" TO \"([^\"]+)\"([]>])");
+
+    /**
+     * Indexed nodes and their keyset value, {@code null} when unset.
+     */
+    private final Map<String, String> index = new LinkedHashMap<>();
+
+    /**
+     * Creation dates of the indexed nodes.
+     */
+    private final Map<String, OffsetDateTime> created = new HashMap<>();
+
+    /**
+     * Content sizes of the indexed nodes, when known.
+     */
+    private final Map<String, Long> sizes = new HashMap<>();
+
+    private SearchApi searchApi;
+    private QueryNodeCollector collector;
+
+    @BeforeEach
+    public void setUp() {
+        searchApi = Mockito.mock(SearchApi.class);
+        Mockito.when(searchApi.search(ArgumentMatchers.any())).thenAnswer(invocation -> search(invocation.getArgument(0)));
+        collector = new QueryNodeCollector(searchApi);
+        collector.queue = new LinkedBlockingQueue<>();
+        collector.sizeLaneService = new SizeLaneService();
+        collector.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        collector.shutdownExecutor();
+    }
+
+    @Test
+    @SneakyThrows
+    void testKeysetPagingAcrossEqualValues() {
+        // a group of equal values spanning several pages, and nodes without value
+        index.put("node-1", "a");
+        for (var i = 2; i <= 7; i++) {
+            index.put(String.format("node-%d", i), "b");
+        }
+        index.put("node-8", "c");
+        index.put("node-9", null);
+        index.put("node-10", null);
+        // mock config
+        val collectorConfig = new CollectorConfig();
+        collectorConfig.addArg("query", "TYPE:'cm:content'");
+        collectorConfig.addArg("paging", "keyset");
+        collectorConfig.addArg("keyset-field", KEYSET_FIELD);
+        collectorConfig.addArg("batch-size", 2);
+        collector.collectNodes(collectorConfig);
+        // every node is collected exactly once
+        val collected = new ArrayList<>(collector.queue);
+        Assertions.assertEquals(index.size(), collected.size(), collected.toString());
+        Assertions.assertEquals(index.keySet(), new HashSet<>(collected));
+    }
+
+    @Test
+    @SneakyThrows
+    void testPartitionedQuery() {
+        indexNodesCreatedHourly(20);
+        // mock config
+        val collectorConfig = new CollectorConfig();
+        collectorConfig.addArg("query", "TYPE:'cm:content'");
+        collectorConfig.addArg("partitions", 4);
+        collectorConfig.addArg("partition-parallelism", 2);
+        collectorConfig.addArg("batch-size", 3);
+        collector.collectNodes(collectorConfig);
+        // partitions are disjoint and cover the oldest and the newest node
+        val collected = new ArrayList<>(collector.queue);
+        Assertions.assertEquals(index.size(), collected.size(), collected.toString());
+        Assertions.assertEquals(index.keySet(), new HashSet<>(collected));
+    }
+
+    @Test
+    @SneakyThrows
+    void testPartitionedKeysetQuery() {
+        indexNodesCreatedHourly(20);
+        // mock config
+        val collectorConfig = new CollectorConfig();
+        collectorConfig.addArg("query", "TYPE:'cm:content'");
+        collectorConfig.addArg("partitions", 3);
+        collectorConfig.addArg("paging", "keyset");
+        collectorConfig.addArg("keyset-field", KEYSET_FIELD);
+        collectorConfig.addArg("batch-size", 2);
+        collector.collectNodes(collectorConfig);
+        val collected = new ArrayList<>(collector.queue);
+        Assertions.assertEquals(index.size(), collected.size(), collected.toString());
+        Assertions.assertEquals(index.keySet(), new HashSet<>(collected));
+    }
+
+    @Test
+    @SneakyThrows
+    void testSizeLanes() {
+        index.put("small", null);
+        index.put("large", null);
+        index.put("unknown", null);
+        sizes.put("small", 1024L);
+        sizes.put("large", 2L * 1024 * 1024);
+        // mock config
+        val sizeLaneService = new SizeLaneService();
+        ReflectionTestUtils.setField(sizeLaneService, "largeFileThresholdMb", 1L);
+        ReflectionTestUtils.setField(sizeLaneService, "largeFileConsumerThreads", 1);
+        ReflectionTestUtils.setField(sizeLaneService, "queueSize", 10);
+        sizeLaneService.init();
+        collector.sizeLaneService = sizeLaneService;
+        val collectorConfig = new CollectorConfig();
+        collectorConfig.addArg("query", "TYPE:'cm:content'");
+        collector.collectNodes(collectorConfig);
+        // nodes reaching the threshold go to the large file lane, nodes of unknown size do not
+        Assertions.assertEquals(List.of("large"), new ArrayList<>(sizeLaneService.getLargeFileQueue()));
+        Assertions.assertEquals(Set.of("small", "unknown"), new HashSet<>(collector.queue));
+        Mockito.verify(searchApi, Mockito.atLeastOnce()).search(ArgumentMatchers.argThat(r -> r.getFields().contains("content")));
+    }
+
+    @Test
+    void testKeysetFieldNotReturned() {
+        // mock config
+        val collectorConfig = new CollectorConfig();
+        collectorConfig.addArg("query", "TYPE:'cm:content'");
+        collectorConfig.addArg("paging", "keyset");
+        collectorConfig.addArg("keyset-field", "sys:node-dbid");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> collector.collectNodes(collectorConfig));
+        Mockito.verifyNoInteractions(searchApi);
+    }
+
+    /**
+     * Indexes nodes created one hour apart, in groups of three sharing the
+     * same keyset value, every fifth node without value.
+     *
+     * @param count number of nodes
+     */
+    private void indexNodesCreatedHourly(int count) {
+        val start = OffsetDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        for (var i = 0; i < count; i++) {
+            val id = String.format("node-%d", i);
+            index.put(id, i % 5 == 4 ? null : String.format("v%02d", i / 3));
+            created.put(id, start.plusHours(i));
+        }
+    }
+
+    /**
+     * Emulates the search server: results are filtered on the range of
+     * creation dates, the presence and the lower bound of the keyset field,
+     * sorted on the requested field and paged by offset.
+     *
+     * @param searchRequest search request
+     * @return the page
+     */
+    private ResponseEntity<ResultSetPaging> search(SearchRequest searchRequest) {
+        val query = searchRequest.getQuery().getQuery();
+        val matcher = LOWER_BOUND.matcher(query);
+        val bound = matcher.find() ? matcher.group(1) : null;
+        val range = CREATED_RANGE.matcher(query);
+        val from = range.find() ? Instant.parse(range.group(1)) : null;
+        val to = from != null ? Instant.parse(range.group(2)) : null;
+        val toInclusive = from != null && "]".equals(range.group(3));
+        val sort = searchRequest.getSort() != null ? searchRequest.getSort().get(0) : null;
+        Comparator<Map.Entry<String, String>> order = sort != null && "cm:created".equals(sort.getField())
+                ? Comparator.comparing(e -> created.get(e.getKey()))
+                : Map.Entry.comparingByValue(Comparator.nullsLast(Comparator.naturalOrder()));
+        if (sort != null && Boolean.FALSE.equals(sort.getAscending())) {
+            order = order.reversed();
+        }
+        val hits = index.entrySet().stream()
+                .filter(e -> !query.contains("NOT ISNOTNULL") || e.getValue() == null)
+                .filter(e -> query.contains("NOT ISNOTNULL") || !query.contains("ISNOTNULL") || e.getValue() != null)
+                .filter(e -> bound == null || (e.getValue() != null && e.getValue().compareTo(bound) >= 0))
+                .filter(e -> from == null || !created.get(e.getKey()).toInstant().isBefore(from))
+                .filter(e -> to == null || created.get(e.getKey()).toInstant().isBefore(to)
+                        || (toInclusive && created.get(e.getKey()).toInstant().equals(to)))
+                .sorted(order)
+                .toList();
+        val skipCount = searchRequest.getPaging().getSkipCount();
+        val maxItems = searchRequest.getPaging().getMaxItems();
+        val entries = new ArrayList<ResultSetRowEntry>();
+        for (val hit : hits.subList(Math.min(skipCount, hits.size()), Math.min(skipCount + maxItems, hits.size()))) {
+            val properties = new HashMap<String, Object>();
+            if (hit.getValue() != null) {
+                properties.put(KEYSET_FIELD, hit.getValue());
+            }
+            entries.add(new ResultSetRowEntry().entry(new ResultNode()
+                    .id(hit.getKey())
+                    .createdAt(created.get(hit.getKey()))
+                    .content(sizes.containsKey(hit.getKey()) ? new ContentInfo().sizeInBytes(sizes.get(hit.getKey())) : null)
+                    .properties(properties)));
+        }
+        return ResponseEntity.ok(new ResultSetPaging().list(new ResultSetPagingList()
+                .entries(entries)
+                .pagination(new Pagination()
+                        .count((long) entries.size())
+                        .skipCount((long) skipCount)
+                        .maxItems((long) maxItems)
+                        .totalItems((long) hits.size())
+                        .hasMoreItems(skipCount + maxItems < hits.size()))));
+    }
+
+}
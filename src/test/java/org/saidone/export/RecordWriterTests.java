@@ -0,0 +1,70 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.export;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests of the {@link RecordWriter}.
+ */
+class RecordWriterTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @SneakyThrows
+    void testWriteCsv() {
+        val file = tempDir.resolve("manifest").resolve("manifest.csv");
+        try (val writer = new RecordWriter(file)) {
+            writer.writeCsv(List.of("id", "name", "size"));
+            writer.writeCsv(Arrays.asList("plain", null, 42));
+            writer.writeCsv(List.of("a,b", "say \"hi\"", "line\nbreak", "carriage\rreturn"));
+        }
+        val eol = System.lineSeparator();
+        Assertions.assertEquals(
+                "id,name,size" + eol
+                        + "plain,,42" + eol
+                        + "\"a,b\",\"say \"\"hi\"\"\",\"line\nbreak\",\"carriage\rreturn\"" + eol,
+                Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SneakyThrows
+    void testWriteJson() {
+        val file = tempDir.resolve("manifest.jsonl");
+        try (val writer = new RecordWriter(file)) {
+            writer.writeJson(Map.of("id", "node-1"));
+            writer.writeJson(Map.of("id", "node-2"));
+        }
+        Assertions.assertEquals(List.of("{\"id\":\"node-1\"}", "{\"id\":\"node-2\"}"), Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+}
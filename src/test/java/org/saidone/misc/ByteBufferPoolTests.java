@@ -0,0 +1,72 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.misc;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests of the {@link ByteBufferPool}.
+ */
+class ByteBufferPoolTests {
+
+    @Test
+    void testInvalidBufferSize() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ByteBufferPool(0, 1024));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ByteBufferPool(-1, 1024));
+    }
+
+    @Test
+    @SneakyThrows
+    void testReleasedBufferIsReusedCleared() {
+        val pool = new ByteBufferPool(16, 16);
+        val buffer = pool.acquire();
+        Assertions.assertEquals(16, buffer.capacity());
+        buffer.put((byte) 1).flip();
+        pool.release(buffer);
+        val reused = pool.acquire();
+        Assertions.assertSame(buffer, reused);
+        Assertions.assertEquals(0, reused.position());
+        Assertions.assertEquals(16, reused.limit());
+    }
+
+    @Test
+    @SneakyThrows
+    void testAcquireBlocksWhenBudgetExhausted() {
+        // a budget smaller than a buffer still allows one buffer
+        val pool = new ByteBufferPool(16, 8);
+        val buffer = pool.acquire();
+        val executor = Executors.newSingleThreadExecutor();
+        try {
+            val waiting = executor.submit(pool::acquire);
+            Assertions.assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+            pool.release(buffer);
+            Assertions.assertSame(buffer, waiting.get(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.misc;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests of the {@link DiskWriter}.
+ */
+class DiskWriterTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @SneakyThrows
+    void testWriteFileAcrossBuffers() {
+        // buffers smaller than the data and a budget of a single buffer
+        val diskWriter = new DiskWriter(2, 16, 16);
+        val data = new byte[100];
+        for (var i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        val file = tempDir.resolve("file.bin");
+        Files.write(file, new byte[200]);
+        diskWriter.write(file, data).get(30, TimeUnit.SECONDS);
+        Assertions.assertArrayEquals(data, Files.readAllBytes(file));
+    }
+
+    @Test
+    @SneakyThrows
+    void testWriteEmptyFile() {
+        val diskWriter = new DiskWriter(1, 16, 16);
+        val file = tempDir.resolve("empty.bin");
+        diskWriter.write(file, new byte[0]).get(30, TimeUnit.SECONDS);
+        Assertions.assertTrue(Files.exists(file));
+        Assertions.assertEquals(0, Files.size(file));
+    }
+
+}
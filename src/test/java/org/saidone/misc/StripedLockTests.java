@@ -0,0 +1,116 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.misc;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests of the {@link StripedLock}.
+ */
+class StripedLockTests {
+
+    @Test
+    void testInvalidStripes() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new StripedLock(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new StripedLock(-1));
+        Assertions.assertEquals(16, new StripedLock(16).size());
+    }
+
+    @Test
+    void testNegativeHashCode() {
+        // keys with a negative hash code must be mapped on a valid stripe
+        val lock = new StripedLock(7);
+        Assertions.assertEquals("ok", lock.withLock(Integer.MIN_VALUE, () -> "ok"));
+        Assertions.assertEquals("ok", lock.withLock(-42, () -> "ok"));
+    }
+
+    @Test
+    @SneakyThrows
+    void testSameKeyIsSerialized() {
+        val lock = new StripedLock(16);
+        val threads = 8;
+        val iterations = 1000;
+        val counter = new int[1];
+        val start = new CountDownLatch(1);
+        val executor = Executors.newFixedThreadPool(threads);
+        try {
+            val futures = new ArrayList<Future<?>>();
+            for (var i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (var j = 0; j < iterations; j++) {
+                        // non atomic increment, only safe while holding the lock
+                        lock.withLock("node", () -> counter[0]++);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (val future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(threads * iterations, counter[0]);
+    }
+
+    @Test
+    @SneakyThrows
+    void testDifferentStripesDoNotBlock() {
+        val lock = new StripedLock(2);
+        val held = new CountDownLatch(1);
+        val release = new CountDownLatch(1);
+        val executor = Executors.newSingleThreadExecutor();
+        try {
+            // hash codes 0 and 1 fall on different stripes
+            val holder = executor.submit(() -> lock.withLock(0, () -> {
+                held.countDown();
+                try {
+                    return release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }));
+            Assertions.assertTrue(held.await(30, TimeUnit.SECONDS));
+            val acquired = new AtomicBoolean();
+            lock.withLock(1, () -> {
+                acquired.set(true);
+                return null;
+            });
+            Assertions.assertTrue(acquired.get());
+            release.countDown();
+            Assertions.assertTrue(holder.get(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
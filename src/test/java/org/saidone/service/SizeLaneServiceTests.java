@@ -0,0 +1,88 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.service;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Tests of the {@link SizeLaneService}.
+ */
+class SizeLaneServiceTests {
+
+    private LinkedBlockingQueue<String> queue;
+    private SizeLaneService sizeLaneService;
+
+    @BeforeEach
+    public void setUp() {
+        queue = new LinkedBlockingQueue<>();
+        sizeLaneService = new SizeLaneService();
+        ReflectionTestUtils.setField(sizeLaneService, "queue", queue);
+        ReflectionTestUtils.setField(sizeLaneService, "largeFileThresholdMb", 1L);
+        ReflectionTestUtils.setField(sizeLaneService, "largeFileConsumerThreads", 1);
+        ReflectionTestUtils.setField(sizeLaneService, "queueSize", 10);
+        sizeLaneService.init();
+    }
+
+    @Test
+    void testIsLarge() {
+        Assertions.assertTrue(sizeLaneService.isEnabled());
+        Assertions.assertTrue(sizeLaneService.isLarge(1024L * 1024));
+        Assertions.assertFalse(sizeLaneService.isLarge(1024L * 1024 - 1));
+        Assertions.assertFalse(sizeLaneService.isLarge(null));
+        // disabled by default
+        ReflectionTestUtils.setField(sizeLaneService, "largeFileThresholdMb", 0L);
+        Assertions.assertFalse(sizeLaneService.isEnabled());
+        Assertions.assertFalse(sizeLaneService.isLarge(Long.MAX_VALUE));
+    }
+
+    @Test
+    @SneakyThrows
+    void testPollLargeFilesFirst() {
+        queue.put("small");
+        sizeLaneService.getLargeFileQueue().put("large");
+        // large file consumers drain their lane first, then help with the regular one
+        Assertions.assertEquals("large", sizeLaneService.poll(1000));
+        Assertions.assertEquals("small", sizeLaneService.poll(1000));
+        Assertions.assertNull(sizeLaneService.poll(200));
+    }
+
+    @Test
+    @SneakyThrows
+    void testPollWaitsForEitherLane() {
+        val producer = new Thread(() -> {
+            try {
+                Thread.sleep(300);
+                queue.put("small");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        Assertions.assertEquals("small", sizeLaneService.poll(30_000));
+        producer.join();
+    }
+
+}
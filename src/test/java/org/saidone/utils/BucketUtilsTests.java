@@ -0,0 +1,60 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.saidone.utils;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Tests of the {@link BucketUtils}.
+ */
+class BucketUtilsTests {
+
+    @Test
+    void testHashBucket() {
+        // md5("hello") = 5d41402abc4b2a76b9719d911017c592
+        Assertions.assertEquals(List.of("5d", "41"), BucketUtils.hashBucket("hello", 2, 2));
+        Assertions.assertEquals(List.of("5d4", "140", "2ab"), BucketUtils.hashBucket("hello", 3, 3));
+        Assertions.assertEquals(List.of("5d41402abc4b2a76b9719d911017c592"), BucketUtils.hashBucket("hello", 1, 32));
+        // the same key always falls in the same bucket
+        Assertions.assertEquals(BucketUtils.hashBucket("node-id", 2, 2), BucketUtils.hashBucket("node-id", 2, 2));
+    }
+
+    @Test
+    void testInvalidHashBucket() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BucketUtils.hashBucket("hello", 0, 2));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BucketUtils.hashBucket("hello", 2, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BucketUtils.hashBucket("hello", 3, 11));
+    }
+
+    @Test
+    void testDateBucket() {
+        val date = OffsetDateTime.of(2024, 3, 7, 10, 30, 0, 0, ZoneOffset.UTC);
+        Assertions.assertEquals(List.of("2024", "03", "07"), BucketUtils.dateBucket(date, "yyyy/MM/dd"));
+        Assertions.assertEquals(List.of("2024-03"), BucketUtils.dateBucket(date, "yyyy-MM"));
+        // leading, trailing and repeated separators do not produce empty levels
+        Assertions.assertEquals(List.of("2024", "03"), BucketUtils.dateBucket(date, "/yyyy//MM/"));
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ *  Alfresco Node Processor - Do things with nodes
+ *  Copyright (C) 2023-2026 Saidone
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.saidone.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Tests of the {@link DateUtils}.
+ */
+class DateUtilsTests {
+
+    @Test
+    void testParseDate() {
+        // REST API format
+        Assertions.assertEquals(OffsetDateTime.of(2020, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC), DateUtils.parseDate("2020-01-01T12:00:00.000+0000"));
+        Assertions.assertEquals(OffsetDateTime.of(2020, 1, 1, 12, 0, 0, 0, ZoneOffset.ofHours(2)), DateUtils.parseDate("2020-01-01T12:00:00.000+0200"));
+        // ISO-8601 fallback
+        Assertions.assertEquals(OffsetDateTime.of(2020, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC), DateUtils.parseDate("2020-01-01T12:00:00Z"));
+    }
+
+    @Test
+    void testInvalidDate() {
+        Assertions.assertThrows(DateTimeParseException.class, () -> DateUtils.parseDate("2020-01-01"));
+    }
+
+}